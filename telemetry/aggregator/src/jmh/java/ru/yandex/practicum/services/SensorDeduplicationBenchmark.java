@@ -0,0 +1,89 @@
+package ru.yandex.practicum.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.services.SensorReadingIndex.SensorReading;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Проверка повторного события датчика: по состоянию в снимке хаба (Instant и equals Avro-записей)
+// и по примитивным показаниям SensorReadingIndex. Все датчики хаба одного типа payload
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorDeduplicationBenchmark {
+
+    private static final int SENSORS = 20;
+
+    @Param({"climate", "light", "motion", "switch", "temperature"})
+    private String payload;
+
+    private SensorsSnapshotAvro snapshot;
+    private Map<String, SensorReading> readings;
+    private SensorEventAvro duplicate;
+
+    @Setup
+    public void setUp() {
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        for (int i = 0; i < SENSORS; i++) {
+            states.put("sensor-" + i, new SensorStateAvro(timestamp, payload(20 + i)));
+        }
+        snapshot = new SensorsSnapshotAvro("hub-1", timestamp, states);
+
+        SensorReadingIndex index = new SensorReadingIndex();
+        readings = index.seed(snapshot);
+
+        // Те же показания в новом экземпляре, как после десериализации
+        duplicate = new SensorEventAvro("sensor-7", "hub-1", timestamp.plusSeconds(1),
+                payload(27));
+    }
+
+    private Object payload(int value) {
+        return switch (payload) {
+            case "climate" -> new ClimateSensorAvro(value, 40, 600);
+            case "light" -> new LightSensorAvro(80, value);
+            case "motion" -> new MotionSensorAvro(80, value % 2 == 1, value);
+            case "switch" -> new SwitchSensorAvro(value % 2 == 1);
+            case "temperature" -> new TemperatureSensorAvro(value, value * 9 / 5 + 32);
+            default -> throw new IllegalArgumentException("Unknown payload " + payload);
+        };
+    }
+
+    @Benchmark
+    public boolean avroState() {
+        SensorStateAvro state = snapshot.getSensorsState().get(duplicate.getId());
+        return state != null
+                && (state.getTimestamp().isAfter(duplicate.getTimestamp()) || state.getData().equals(duplicate.getPayload()));
+    }
+
+    @Benchmark
+    public boolean primitiveReading() {
+        SensorReading reading = readings.get(duplicate.getId());
+        return reading != null
+                && (reading.isNewerThan(duplicate.getTimestamp().toEpochMilli()) || reading.matches(duplicate.getPayload()));
+    }
+}
@@ -13,13 +13,30 @@ public class KafkaConfigProperties {
     private String producerClientIdConfig;
     private String producerKeySerializer;
     private String producerValueSerializer;
+    private int producerLingerMs;
+    private int producerBatchSize;
+    private String producerCompressionType;
 
     private String consumerGroupId;
     private String consumerClientIdConfig;
     private String consumerKeyDeserializer;
     private String consumerValueDeserializer;
     private long consumeAttemptTimeout;
+    private int consumerWorkers = 1;
 
     private String sensorEventsTopic;
     private String sensorSnapshotsTopic;
+
+    private boolean deltaSnapshotsEnabled;
+    private String sensorSnapshotDeltasTopic;
+    private int snapshotKeyframeInterval;
+
+    private boolean stateRecoveryEnabled;
+    private String snapshotValueDeserializer;
+
+    private String snapshotStore;
+    private String snapshotStorePath;
+    private int snapshotStoreSizeMb;
+    private int snapshotStoreRegionMb = 1024;
+    private int snapshotStoreHotHubs;
 }
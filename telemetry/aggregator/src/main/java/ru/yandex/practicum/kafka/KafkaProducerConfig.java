@@ -24,6 +24,9 @@ public class KafkaProducerConfig {
         properties.put(ProducerConfig.ACKS_CONFIG, "all");
         properties.put(ProducerConfig.RETRIES_CONFIG, 3);
         properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, kafkaProperties.getProducerLingerMs());
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, kafkaProperties.getProducerBatchSize());
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, kafkaProperties.getProducerCompressionType());
 
         return new KafkaProducer<>(properties);
     }
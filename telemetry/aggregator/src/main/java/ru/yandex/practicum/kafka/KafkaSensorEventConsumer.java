@@ -3,19 +3,19 @@ package ru.yandex.practicum.kafka;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
-import org.springframework.stereotype.Component;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-@Component
 @RequiredArgsConstructor
 @Slf4j
 public class KafkaSensorEventConsumer implements AutoCloseable {
@@ -26,8 +26,8 @@ public class KafkaSensorEventConsumer implements AutoCloseable {
     @Getter
     private final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
 
-    public void subscribeToSensorEvents() {
-        consumer.subscribe(List.of(kafkaConfig.getSensorEventsTopic()));
+    public void subscribeToSensorEvents(ConsumerRebalanceListener listener) {
+        consumer.subscribe(List.of(kafkaConfig.getSensorEventsTopic()), listener);
     }
 
     public ConsumerRecords<String, SensorEventAvro> poll(long timeoutMs) {
@@ -38,6 +38,14 @@ public class KafkaSensorEventConsumer implements AutoCloseable {
         currentOffsets.put(new TopicPartition(topic, partition), new OffsetAndMetadata(nextOffset));
     }
 
+    public void trackOffsets(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        currentOffsets.putAll(offsets);
+    }
+
+    public void forgetOffsets(Collection<TopicPartition> partitions) {
+        currentOffsets.keySet().removeAll(partitions);
+    }
+
     public void commitAsyncCurrentOffsets() {
         consumer.commitAsync(currentOffsets, (offsets, exception) -> {
             if (exception != null) {
@@ -2,68 +2,61 @@ package ru.yandex.practicum.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.KafkaConfig;
 import ru.yandex.practicum.kafka.KafkaConfigProperties;
 import ru.yandex.practicum.kafka.KafkaSensorEventConsumer;
-import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 
+// Запускает consumerWorkers обработчиков в одной группе: Kafka распределяет между ними партиции,
+// а события одного хаба (ключ записи) всегда обрабатывает один поток
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AggregationStarter {
 
-    private final KafkaSensorEventConsumer consumer;
+    private final KafkaConfig kafkaConfig;
     private final SnapshotService snapshotService;
-    private final KafkaConfigProperties kafkaConfig;
 
     public void start() {
-        Runtime.getRuntime().addShutdownHook(new Thread(consumer::wakeup));
-
-        try {
-            consumer.subscribeToSensorEvents();
-            while (true) {
-                ConsumerRecords<String, SensorEventAvro> records =
-                        consumer.poll(kafkaConfig.getConsumeAttemptTimeout());
-
-                int processedCount = 0;
-                for (ConsumerRecord<String, SensorEventAvro> record : records) {
-                    handleRecord(record);
-                    consumer.trackOffset(record.topic(), record.partition(), record.offset() + 1);
-                    processedCount++;
-                }
+        KafkaConfigProperties properties = kafkaConfig.getKafkaProperties();
+        int workerCount = Math.max(1, properties.getConsumerWorkers());
+
+        List<AggregationWorker> workers = new ArrayList<>(workerCount);
+        List<Thread> threads = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            AggregationWorker worker = new AggregationWorker(
+                    new KafkaSensorEventConsumer(kafkaConfig.createKafkaConsumer(i), properties),
+                    snapshotService,
+                    properties);
+            workers.add(worker);
+            threads.add(new Thread(worker, "aggregation-worker-" + i));
+        }
 
-                if (processedCount > 0) {
-                    consumer.commitAsyncCurrentOffsets();
-                    log.debug("Committed offsets for {} processed records", processedCount);
-                }
-            }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            workers.forEach(AggregationWorker::wakeup);
+            awaitTermination(threads);
+        }));
 
-        } catch (WakeupException ignores) {
-            // Игнорируем, это нормальное завершение
-        } catch (Exception e) {
-            log.error("An error occurred while processing events from sensors", e);
+        log.info("Starting {} aggregation workers", workerCount);
+        threads.forEach(Thread::start);
+        try {
+            awaitTermination(threads);
         } finally {
-            try {
-                consumer.commitSyncCurrentOffsets();
-            } catch (Exception e) {
-                log.warn("Error during final commitSync", e);
-            } finally {
-                log.info("Closing the consumer");
-                consumer.close();
-                log.info("Closing the producer");
-                snapshotService.close();
-            }
+            log.info("Closing the producer");
+            snapshotService.close();
         }
     }
 
-    private void handleRecord(ConsumerRecord<String, SensorEventAvro> consumerRecord) {
-        Optional<SensorsSnapshotAvro> snapshotAvro = snapshotService.updateState(consumerRecord.value());
-        snapshotAvro.ifPresent(snapshotService::collectSensorSnapshot);
+    private void awaitTermination(List<Thread> threads) {
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.KafkaSensorEventConsumer;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Обработчик партиций топика событий: свой consumer, свои неподтверждённые пачки и снимки хабов
+// только из назначенных ему партиций
+@RequiredArgsConstructor
+@Slf4j
+class AggregationWorker implements Runnable, ConsumerRebalanceListener {
+
+    private final KafkaSensorEventConsumer consumer;
+    private final SnapshotService snapshotService;
+    private final KafkaConfigProperties kafkaConfig;
+
+    // Пачки poll(), снимки которых ещё не подтверждены Kafka, в порядке получения
+    private final Deque<PendingBatch> pendingBatches = new ArrayDeque<>();
+
+    @Override
+    public void run() {
+        try {
+            consumer.subscribeToSensorEvents(this);
+            while (true) {
+                ConsumerRecords<String, SensorEventAvro> records =
+                        consumer.poll(kafkaConfig.getConsumeAttemptTimeout());
+
+                if (!records.isEmpty()) {
+                    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                    List<CompletableFuture<?>> sends = new ArrayList<>();
+                    for (ConsumerRecord<String, SensorEventAvro> record : records) {
+                        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                        handleRecord(partition, record, sends);
+                        offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                    }
+                    pendingBatches.addLast(new PendingBatch(offsets,
+                            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))));
+                }
+
+                if (trackAcknowledgedBatches()) {
+                    consumer.commitAsyncCurrentOffsets();
+                }
+            }
+
+        } catch (WakeupException ignores) {
+            // Игнорируем, это нормальное завершение
+        } catch (Exception e) {
+            log.error("An error occurred while processing events from sensors", e);
+        } finally {
+            try {
+                snapshotService.flush();
+                trackAcknowledgedBatches();
+            } catch (Exception e) {
+                log.warn("Not all snapshots were acknowledged before shutdown", e);
+            }
+            try {
+                consumer.commitSyncCurrentOffsets();
+            } catch (Exception e) {
+                log.warn("Error during final commitSync", e);
+            } finally {
+                log.info("Closing the consumer");
+                consumer.close();
+            }
+        }
+    }
+
+    public void wakeup() {
+        consumer.wakeup();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        log.info("Partitions assigned: {}", partitions);
+        snapshotService.onPartitionsAssigned(partitions);
+    }
+
+    // Перед передачей партиций дожидаемся подтверждения отправленных снимков и фиксируем смещения,
+    // чтобы новый владелец начал с первого необработанного события
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        log.info("Partitions revoked: {}", partitions);
+        snapshotService.flush();
+        trackAcknowledgedBatches();
+        consumer.commitSyncCurrentOffsets();
+        release(partitions);
+    }
+
+    // Партиции уже переданы другому участнику группы, фиксировать их смещения нельзя.
+    // Смещения остальных партиций в ожидающих пачках сохраняются
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        log.warn("Partitions lost: {}", partitions);
+        pendingBatches.removeIf(batch -> {
+            batch.offsets().keySet().removeAll(partitions);
+            return batch.offsets().isEmpty();
+        });
+        release(partitions);
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+        consumer.forgetOffsets(partitions);
+        snapshotService.onPartitionsRevoked(partitions);
+    }
+
+    private void handleRecord(TopicPartition partition,
+                              ConsumerRecord<String, SensorEventAvro> consumerRecord,
+                              List<CompletableFuture<?>> sends) {
+        snapshotService.updateState(partition, consumerRecord.value())
+                .map(snapshotService::collectSensorSnapshot)
+                .ifPresent(sends::add);
+    }
+
+    // Смещения пачки фиксируются, только когда Kafka подтвердила все снимки, построенные по ней,
+    // и все предыдущие пачки. Неотправленный снимок останавливает обработку без фиксации его пачки
+    private boolean trackAcknowledgedBatches() {
+        boolean acknowledged = false;
+        while (!pendingBatches.isEmpty() && pendingBatches.peekFirst().sends().isDone()) {
+            PendingBatch batch = pendingBatches.peekFirst();
+            batch.sends().join();
+            pendingBatches.pollFirst();
+            consumer.trackOffsets(batch.offsets());
+            acknowledged = true;
+        }
+        return acknowledged;
+    }
+
+    private record PendingBatch(Map<TopicPartition, OffsetAndMetadata> offsets, CompletableFuture<Void> sends) {
+    }
+}
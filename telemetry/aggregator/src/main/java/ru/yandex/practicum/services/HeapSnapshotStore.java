@@ -0,0 +1,43 @@
+package ru.yandex.practicum.services;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Партицию в каждый момент обрабатывает только один поток, поэтому карты хабов внутри неё
+// не синхронизируются
+@Component
+@ConditionalOnProperty(prefix = "kafka.config", name = "snapshot-store", havingValue = "heap", matchIfMissing = true)
+public class HeapSnapshotStore implements SnapshotStore {
+
+    private final Map<TopicPartition, Map<String, SensorsSnapshotAvro>> shards = new ConcurrentHashMap<>();
+
+    @Override
+    public SensorsSnapshotAvro get(TopicPartition partition, String hubId) {
+        Map<String, SensorsSnapshotAvro> snapshots = shards.get(partition);
+        return snapshots == null ? null : snapshots.get(hubId);
+    }
+
+    @Override
+    public void put(TopicPartition partition, SensorsSnapshotAvro snapshot) {
+        shards.computeIfAbsent(partition, p -> new HashMap<>()).put(snapshot.getHubId(), snapshot);
+    }
+
+    @Override
+    public void assign(TopicPartition partition, Map<String, SensorsSnapshotAvro> snapshots) {
+        shards.put(partition, new HashMap<>(snapshots));
+    }
+
+    @Override
+    public Collection<String> release(TopicPartition partition) {
+        Map<String, SensorsSnapshotAvro> snapshots = shards.remove(partition);
+        return snapshots == null ? List.of() : snapshots.keySet();
+    }
+}
@@ -1,20 +1,27 @@
 package ru.yandex.practicum.services;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.services.SensorReadingIndex.SensorReading;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -22,53 +29,122 @@ import java.util.Optional;
 public class KafkaSnapshotServiceImpl implements SnapshotService {
     private final Producer<String, SpecificRecordBase> producer;
     private final KafkaConfig kafkaConfig;
-    private final Map<String, SensorsSnapshotAvro> snapshots = new HashMap<>();
+    private final SnapshotDeltaTracker deltaTracker;
+    private final SnapshotStateRecovery stateRecovery;
+    private final SnapshotStore snapshotStore;
+    private final SensorReadingIndex sensorReadings;
+
+    @PostConstruct
+    public void init() {
+        snapshotStore.setEvictionListener(sensorReadings::forget);
+    }
 
     @Override
-    public Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event) {
-        SensorsSnapshotAvro snapshotAvro = snapshots.getOrDefault(
-                event.getHubId(),
-                getNewSensorsSnapshotAvro(event.getHubId())
-        );
-
-        SensorStateAvro oldState = snapshotAvro.getSensorsState().get(event.getId());
-        if (oldState != null &&
-                (oldState.getTimestamp().isAfter(event.getTimestamp()) ||
-                        oldState.getData().equals(event.getPayload()))) {
+    public Optional<SensorsSnapshotAvro> updateState(TopicPartition partition, SensorEventAvro event) {
+        long timestamp = event.getTimestamp().toEpochMilli();
+        SensorsSnapshotAvro snapshotAvro = null;
+        Map<String, SensorReading> readings = sensorReadings.find(event.getHubId());
+        if (readings == null) {
+            // Хаб новый, восстановлен при назначении партиции или его снимок вытеснен из кучи
+            snapshotAvro = snapshotStore.get(partition, event.getHubId());
+            readings = snapshotAvro == null
+                    ? sensorReadings.readings(event.getHubId())
+                    : sensorReadings.seed(snapshotAvro);
+        }
+        SensorReading reading = readings.get(event.getId());
+        if (reading != null && (reading.isNewerThan(timestamp) || reading.matches(event.getPayload()))) {
             return Optional.empty();
         }
+        if (reading == null) {
+            reading = new SensorReading();
+            readings.put(event.getId(), reading);
+        }
+        reading.update(timestamp, event.getPayload());
+
+        if (snapshotAvro == null) {
+            snapshotAvro = snapshotStore.get(partition, event.getHubId());
+        }
+        if (snapshotAvro == null) {
+            snapshotAvro = getNewSensorsSnapshotAvro(event.getHubId());
+        }
         SensorStateAvro newState = getNewSensorsSnapshotAvro(event);
         snapshotAvro.getSensorsState().put(event.getId(), newState);
+        if (kafkaConfig.getKafkaProperties().isDeltaSnapshotsEnabled()) {
+            deltaTracker.markChanged(event.getHubId(), event.getId());
+        }
         snapshotAvro.setTimestamp(event.getTimestamp());
-        snapshots.put(event.getHubId(), snapshotAvro);
+        snapshotStore.put(partition, snapshotAvro);
         return Optional.of(snapshotAvro);
     }
 
+    // В режиме дельт с восстановлением состояния полный снимок пишется и в сжатый топик снимков:
+    // восстановление читает только его. Снимок считается отправленным, когда подтверждены обе записи
     @Override
-    public void collectSensorSnapshot(SensorsSnapshotAvro sensorsSnapshotAvro) {
+    public CompletableFuture<RecordMetadata> collectSensorSnapshot(SensorsSnapshotAvro sensorsSnapshotAvro) {
+        KafkaConfigProperties properties = kafkaConfig.getKafkaProperties();
+        if (!properties.isDeltaSnapshotsEnabled()) {
+            return send(properties.getSensorSnapshotsTopic(), sensorsSnapshotAvro, sensorsSnapshotAvro);
+        }
+
+        CompletableFuture<RecordMetadata> delta = send(properties.getSensorSnapshotDeltasTopic(),
+                sensorsSnapshotAvro, deltaTracker.toDelta(sensorsSnapshotAvro));
+        if (!properties.isStateRecoveryEnabled()) {
+            return delta;
+        }
+        CompletableFuture<RecordMetadata> snapshot =
+                send(properties.getSensorSnapshotsTopic(), sensorsSnapshotAvro, sensorsSnapshotAvro);
+        return delta.thenCombine(snapshot, (deltaMetadata, snapshotMetadata) -> deltaMetadata);
+    }
+
+    private CompletableFuture<RecordMetadata> send(String topic,
+                                                   SensorsSnapshotAvro sensorsSnapshotAvro,
+                                                   SpecificRecordBase value) {
         ProducerRecord<String, SpecificRecordBase> rec = new ProducerRecord<>(
-                kafkaConfig.getKafkaProperties().getSensorSnapshotsTopic(),
+                topic,
                 null,
                 sensorsSnapshotAvro.getTimestamp().toEpochMilli(),
                 sensorsSnapshotAvro.getHubId(),
-                sensorsSnapshotAvro);
+                value);
 
+        CompletableFuture<RecordMetadata> result = new CompletableFuture<>();
         producer.send(rec, (metadata, exception) -> {
             if (exception != null) {
                 log.error("Failed to send sensor snapshot to Kafka for hub: {}",
                         sensorsSnapshotAvro.getHubId(), exception);
+                result.completeExceptionally(exception);
             } else {
                 log.debug("Successfully sent sensor snapshot to Kafka for hub: {}, partition: {}, offset: {}",
                         sensorsSnapshotAvro.getHubId(), metadata.partition(), metadata.offset());
+                result.complete(metadata);
             }
         });
+        return result;
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        stateRecovery.recover(partitions).forEach(snapshotStore::assign);
+    }
 
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            Collection<String> hubIds = snapshotStore.release(partition);
+            deltaTracker.forget(hubIds);
+            sensorReadings.forget(hubIds);
+            log.info("Released snapshot state of {} hubs from partition {}", hubIds.size(), partition);
+        }
+    }
+
+    @Override
+    public void flush() {
         producer.flush();
     }
 
     @Override
     public void close() {
         SnapshotService.super.close();
+        snapshotStore.close();
         if (producer != null) {
             producer.close();
         }
@@ -0,0 +1,303 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.serialization.AvroSerializer;
+import ru.yandex.practicum.kafka.telemetry.serialization.SensorsSnapshotDeserializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Снимки хабов хранятся сериализованными в отображённом в память файле вне кучи, в куче остаются
+// только индекс смещений и LRU активных хабов (всего около snapshotStoreHotHubs). Вытесняемый из LRU
+// снимок дописывается в конец файла. Файл состоит из областей по snapshotStoreRegionMb, каждая
+// отображается отдельно, поэтому размер не ограничен 2 ГБ одного отображения; запись не пересекает
+// границу области. Файл растёт по областям до snapshotStoreSizeMb, а когда мусора больше половины
+// или расти некуда, живые записи сдвигаются к началу. Если места нет и после этого, снимок
+// не вытесняется и остаётся в куче: LRU партиции временно превышает свой бюджет.
+// LRU разбит по партициям: снимки партиции читает, меняет и вытесняет только владеющий ею поток,
+// поэтому снимок не сериализуется, пока его меняет другой поток. Общий файл защищён монитором this.
+// Файл не переживает перезапуск: после него состояние восстанавливается из Kafka
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "kafka.config", name = "snapshot-store", havingValue = "mapped-file")
+public class MappedFileSnapshotStore implements SnapshotStore {
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_REGION_MB = 1024;
+
+    private final AvroSerializer serializer = new AvroSerializer();
+    private final SensorsSnapshotDeserializer deserializer = new SensorsSnapshotDeserializer();
+
+    private final FileChannel channel;
+    private final long maxSize;
+    private final int regionSize;
+    private final int hotHubs;
+
+    private final Map<TopicPartition, Shard> shards = new ConcurrentHashMap<>();
+    private volatile Consumer<String> evictionListener = hubId -> {
+    };
+
+    // Защищены монитором this
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final Map<String, Long> positions = new HashMap<>();
+    private long writePosition;
+    // Байты записей, на которые ссылается positions, и байты записей, ставших мусором после сжатия
+    private long liveBytes;
+    private long freedBytes;
+    private boolean full;
+
+    public MappedFileSnapshotStore(KafkaConfig kafkaConfig) {
+        KafkaConfigProperties properties = kafkaConfig.getKafkaProperties();
+        Path path = Path.of(properties.getSnapshotStorePath());
+        int regionMb = properties.getSnapshotStoreRegionMb();
+        if (regionMb <= 0 || regionMb > MAX_REGION_MB) {
+            throw new IllegalArgumentException("Snapshot store region size must be between 1 and "
+                    + MAX_REGION_MB + " MB");
+        }
+        maxSize = properties.getSnapshotStoreSizeMb() * 1024L * 1024L;
+        regionSize = (int) Math.min(regionMb * 1024L * 1024L, maxSize);
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open snapshot store file " + path, e);
+        }
+        mapRegion();
+
+        hotHubs = properties.getSnapshotStoreHotHubs();
+        log.info("Snapshot store mapped to {} (up to {} MB in {} MB regions, {} hot hubs)", path,
+                properties.getSnapshotStoreSizeMb(), regionSize / (1024 * 1024), hotHubs);
+    }
+
+    @Override
+    public void setEvictionListener(Consumer<String> listener) {
+        evictionListener = listener;
+    }
+
+    @Override
+    public SensorsSnapshotAvro get(TopicPartition partition, String hubId) {
+        Shard shard = shard(partition);
+        SensorsSnapshotAvro snapshot = shard.hot.get(hubId);
+        if (snapshot != null || !shard.hubs.contains(hubId)) {
+            return snapshot;
+        }
+        synchronized (this) {
+            Long position = positions.get(hubId);
+            if (position == null) {
+                return null;
+            }
+            snapshot = read(position);
+        }
+        shard.hot.put(hubId, snapshot);
+        return snapshot;
+    }
+
+    @Override
+    public void put(TopicPartition partition, SensorsSnapshotAvro snapshot) {
+        Shard shard = shard(partition);
+        shard.hubs.add(snapshot.getHubId());
+        shard.hot.put(snapshot.getHubId(), snapshot);
+    }
+
+    @Override
+    public void assign(TopicPartition partition, Map<String, SensorsSnapshotAvro> snapshots) {
+        Shard shard = shard(partition);
+        for (SensorsSnapshotAvro snapshot : snapshots.values()) {
+            shard.hubs.add(snapshot.getHubId());
+            if (!write(snapshot)) {
+                shard.hot.put(snapshot.getHubId(), snapshot);
+            }
+        }
+    }
+
+    @Override
+    public Collection<String> release(TopicPartition partition) {
+        Shard shard = shards.remove(partition);
+        if (shard == null) {
+            return List.of();
+        }
+        synchronized (this) {
+            shard.hubs.forEach(hubId -> {
+                Long position = positions.remove(hubId);
+                if (position != null) {
+                    free(recordSize(position));
+                }
+            });
+        }
+        return shard.hubs;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing snapshot store file", e);
+        }
+    }
+
+    private Shard shard(TopicPartition partition) {
+        return shards.computeIfAbsent(partition, p -> new Shard());
+    }
+
+    // Вызывается из потока, владеющего партицией снимка, внутри LinkedHashMap.put: не бросает
+    // исключений, при нехватке места отказывает, и снимок остаётся в LRU
+    private boolean evict(SensorsSnapshotAvro snapshot) {
+        if (!write(snapshot)) {
+            return false;
+        }
+        evictionListener.accept(snapshot.getHubId());
+        return true;
+    }
+
+    private SensorsSnapshotAvro read(long position) {
+        MappedByteBuffer region = regions.get(regionOf(position));
+        int offset = offsetOf(position);
+        byte[] data = new byte[region.getInt(offset)];
+        region.get(offset + HEADER_SIZE, data);
+        return deserializer.deserialize(null, data);
+    }
+
+    // Сериализация идёт вне монитора: снимок принадлежит вызывающему потоку.
+    // Возвращает false, если места для снимка нет
+    private boolean write(SensorsSnapshotAvro snapshot) {
+        byte[] data = serializer.serialize(null, snapshot);
+        int required = HEADER_SIZE + data.length;
+        synchronized (this) {
+            Long position = allocate(required);
+            if (position == null) {
+                if (!full) {
+                    full = true;
+                    log.warn("Snapshot store file is full ({} of {} bytes live), keeping snapshots on heap",
+                            liveBytes, maxSize);
+                }
+                return false;
+            }
+            full = false;
+            MappedByteBuffer region = regions.get(regionOf(position));
+            int offset = offsetOf(position);
+            region.putInt(offset, data.length);
+            region.put(offset + HEADER_SIZE, data);
+            Long previous = positions.put(snapshot.getHubId(), position);
+            if (previous != null) {
+                free(recordSize(previous));
+            }
+            liveBytes += required;
+            return true;
+        }
+    }
+
+    // Вызывается под this: место под запись в конце файла. Сжатие - если мусора больше живых данных
+    // или файл достиг предела, но с прошлого сжатия освободилось место под запись; иначе новая область.
+    // Заполненный файл не сжимается заново на каждую попытку вытеснения
+    private Long allocate(int required) {
+        if (required > regionSize) {
+            return null;
+        }
+        Long position = place(writePosition, required);
+        if (freedBytes > liveBytes || (position == null && freedBytes >= required)) {
+            compact();
+            position = place(writePosition, required);
+        }
+        if (position == null) {
+            return null;
+        }
+        while (regionOf(position) >= regions.size()) {
+            mapRegion();
+        }
+        writePosition = position + required;
+        return position;
+    }
+
+    // Смещение записи размера required не раньше from в пределах одной области, или null, если файл
+    // достиг предельного размера
+    private Long place(long from, int required) {
+        long position = offsetOf(from) + required > regionSize ? (long) (regionOf(from) + 1) * regionSize : from;
+        return position + required > maxSize ? null : position;
+    }
+
+    private void mapRegion() {
+        long start = (long) regions.size() * regionSize;
+        try {
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(regionSize, maxSize - start)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map snapshot store region at " + start, e);
+        }
+    }
+
+    // Сдвигает живые записи к началу файла в порядке возрастания смещений, раскладывая их по областям
+    // тем же правилом, что и запись, поэтому копируемая запись никогда не затирает ещё не перенесённую
+    private void compact() {
+        List<Map.Entry<String, Long>> live = new ArrayList<>(positions.entrySet());
+        live.sort(Map.Entry.comparingByValue());
+
+        long target = 0;
+        for (Map.Entry<String, Long> entry : live) {
+            long source = entry.getValue();
+            int length = recordSize(source);
+            target = place(target, length);
+            if (source != target) {
+                MappedByteBuffer from = regions.get(regionOf(source));
+                ByteBuffer record = from.duplicate().position(offsetOf(source)).limit(offsetOf(source) + length);
+                regions.get(regionOf(target)).duplicate().position(offsetOf(target)).put(record);
+                entry.setValue(target);
+            }
+            target += length;
+        }
+        log.debug("Snapshot store compacted from {} to {} bytes", writePosition, target);
+        writePosition = target;
+        freedBytes = 0;
+    }
+
+    private void free(int recordSize) {
+        liveBytes -= recordSize;
+        freedBytes += recordSize;
+    }
+
+    private int recordSize(long position) {
+        return HEADER_SIZE + regions.get(regionOf(position)).getInt(offsetOf(position));
+    }
+
+    private int regionOf(long position) {
+        return (int) (position / regionSize);
+    }
+
+    private int offsetOf(long position) {
+        return (int) (position % regionSize);
+    }
+
+    // Хабы партиции и LRU её активных снимков. Бюджет snapshotStoreHotHubs делится между партициями
+    private final class Shard {
+        private final Set<String> hubs = new HashSet<>();
+        private final Map<String, SensorsSnapshotAvro> hot = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SensorsSnapshotAvro> eldest) {
+                if (size() <= Math.max(1, hotHubs / Math.max(1, shards.size()))) {
+                    return false;
+                }
+                return evict(eldest.getValue());
+            }
+        };
+    }
+}
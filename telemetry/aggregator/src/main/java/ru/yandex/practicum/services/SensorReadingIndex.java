@@ -0,0 +1,129 @@
+package ru.yandex.practicum.services;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Последние показания датчиков в виде примитивов: повторы и устаревшие события отбрасываются
+// без обращения к снимку хаба и без сравнения Avro-записей. Показания хаба меняет только поток,
+// владеющий его партицией. Показания хранятся только для хабов, чей снимок лежит в куче: когда
+// хранилище вытесняет снимок, показания удаляются и при следующем событии хаба строятся из снимка
+@Component
+public class SensorReadingIndex {
+
+    private final Map<String, Map<String, SensorReading>> hubs = new ConcurrentHashMap<>();
+
+    // null, если показания хаба ещё не построены или были удалены
+    public Map<String, SensorReading> find(String hubId) {
+        return hubs.get(hubId);
+    }
+
+    public Map<String, SensorReading> readings(String hubId) {
+        return hubs.computeIfAbsent(hubId, id -> new HashMap<>());
+    }
+
+    public Map<String, SensorReading> seed(SensorsSnapshotAvro snapshot) {
+        Map<String, SensorReading> readings = readings(snapshot.getHubId());
+        snapshot.getSensorsState().forEach((sensorId, state) -> readings.put(sensorId, SensorReading.of(state)));
+        return readings;
+    }
+
+    public void forget(String hubId) {
+        hubs.remove(hubId);
+    }
+
+    public void forget(Collection<String> hubIds) {
+        hubs.keySet().removeAll(hubIds);
+    }
+
+    public static final class SensorReading {
+        private static final int CLIMATE = 1;
+        private static final int LIGHT = 2;
+        private static final int MOTION = 3;
+        private static final int SWITCH = 4;
+        private static final int TEMPERATURE = 5;
+
+        private long timestamp;
+        private int type;
+        private int first;
+        private int second;
+        private int third;
+
+        static SensorReading of(SensorStateAvro state) {
+            SensorReading reading = new SensorReading();
+            reading.update(state.getTimestamp().toEpochMilli(), state.getData());
+            return reading;
+        }
+
+        public boolean isNewerThan(long eventTimestamp) {
+            return timestamp > eventTimestamp;
+        }
+
+        public boolean matches(Object payload) {
+            if (payload instanceof ClimateSensorAvro climate) {
+                return type == CLIMATE
+                        && first == climate.getTemperatureC()
+                        && second == climate.getHumidity()
+                        && third == climate.getCo2Level();
+            } else if (payload instanceof LightSensorAvro light) {
+                return type == LIGHT
+                        && first == light.getLinkQuality()
+                        && second == light.getLuminosity();
+            } else if (payload instanceof MotionSensorAvro motion) {
+                return type == MOTION
+                        && first == motion.getLinkQuality()
+                        && second == (motion.getMotion() ? 1 : 0)
+                        && third == motion.getVoltage();
+            } else if (payload instanceof SwitchSensorAvro switchSensor) {
+                return type == SWITCH
+                        && first == (switchSensor.getState() ? 1 : 0);
+            } else if (payload instanceof TemperatureSensorAvro temperature) {
+                return type == TEMPERATURE
+                        && first == temperature.getTemperatureC()
+                        && second == temperature.getTemperatureF();
+            }
+            return false;
+        }
+
+        public void update(long eventTimestamp, Object payload) {
+            timestamp = eventTimestamp;
+            second = 0;
+            third = 0;
+            if (payload instanceof ClimateSensorAvro climate) {
+                type = CLIMATE;
+                first = climate.getTemperatureC();
+                second = climate.getHumidity();
+                third = climate.getCo2Level();
+            } else if (payload instanceof LightSensorAvro light) {
+                type = LIGHT;
+                first = light.getLinkQuality();
+                second = light.getLuminosity();
+            } else if (payload instanceof MotionSensorAvro motion) {
+                type = MOTION;
+                first = motion.getLinkQuality();
+                second = motion.getMotion() ? 1 : 0;
+                third = motion.getVoltage();
+            } else if (payload instanceof SwitchSensorAvro switchSensor) {
+                type = SWITCH;
+                first = switchSensor.getState() ? 1 : 0;
+            } else if (payload instanceof TemperatureSensorAvro temperature) {
+                type = TEMPERATURE;
+                first = temperature.getTemperatureC();
+                second = temperature.getTemperatureF();
+            } else {
+                type = 0;
+                first = 0;
+            }
+        }
+    }
+}
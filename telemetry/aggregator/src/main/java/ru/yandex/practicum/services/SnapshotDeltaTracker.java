@@ -0,0 +1,69 @@
+package ru.yandex.practicum.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Отслеживает изменившиеся датчики хаба между публикациями и версию его снимка.
+// Первый снимок хаба после запуска или передачи партиции и каждый snapshotKeyframeInterval-й
+// публикуются целиком. Состояние хаба меняет только поток, владеющий его партицией
+@Component
+@RequiredArgsConstructor
+public class SnapshotDeltaTracker {
+
+    private final KafkaConfig kafkaConfig;
+    private final Map<String, HubDeltaState> hubs = new ConcurrentHashMap<>();
+
+    public void markChanged(String hubId, String sensorId) {
+        hubs.computeIfAbsent(hubId, id -> new HubDeltaState()).changedSensors.add(sensorId);
+    }
+
+    public SensorsSnapshotDeltaAvro toDelta(SensorsSnapshotAvro snapshot) {
+        HubDeltaState state = hubs.computeIfAbsent(snapshot.getHubId(), id -> new HubDeltaState());
+        long baseVersion = state.version++;
+        boolean keyframe = baseVersion == 0
+                || state.sinceKeyframe >= kafkaConfig.getKafkaProperties().getSnapshotKeyframeInterval();
+
+        Map<String, SensorStateAvro> sensorsState;
+        if (keyframe) {
+            sensorsState = snapshot.getSensorsState();
+            state.sinceKeyframe = 0;
+        } else {
+            sensorsState = new HashMap<>();
+            for (String sensorId : state.changedSensors) {
+                sensorsState.put(sensorId, snapshot.getSensorsState().get(sensorId));
+            }
+            state.sinceKeyframe++;
+        }
+        state.changedSensors.clear();
+
+        return new SensorsSnapshotDeltaAvro(
+                snapshot.getHubId(),
+                snapshot.getTimestamp(),
+                state.version,
+                baseVersion,
+                keyframe,
+                sensorsState
+        );
+    }
+
+    public void forget(Collection<String> hubIds) {
+        hubs.keySet().removeAll(hubIds);
+    }
+
+    private static class HubDeltaState {
+        private long version;
+        private int sinceKeyframe;
+        private final Set<String> changedSensors = new HashSet<>();
+    }
+}
@@ -1,15 +1,28 @@
 package ru.yandex.practicum.services;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface SnapshotService {
 
-    Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event);
+    Optional<SensorsSnapshotAvro> updateState(TopicPartition partition, SensorEventAvro event);
 
-    void collectSensorSnapshot(SensorsSnapshotAvro sensorsSnapshotAvro);
+    CompletableFuture<RecordMetadata> collectSensorSnapshot(SensorsSnapshotAvro sensorsSnapshotAvro);
+
+    default void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    default void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    }
+
+    default void flush() {
+    }
 
     default void close() {
     }
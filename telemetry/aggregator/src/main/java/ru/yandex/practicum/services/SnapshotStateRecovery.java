@@ -0,0 +1,105 @@
+package ru.yandex.practicum.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Восстанавливает снимки хабов назначенных партиций по последним опубликованным снимкам из сжатого
+// топика снимков: после сжатия в нём по записи на хаб, и время чтения зависит от числа хабов, а не
+// от истории. Топик дельт не читается, в режиме дельт снимки пишутся и в топик снимков.
+// Хаб относится к партиции топика событий так же, как его события: по хешу ключа hubId
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotStateRecovery {
+
+    private final KafkaConfig kafkaConfig;
+
+    public Map<TopicPartition, Map<String, SensorsSnapshotAvro>> recover(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, Map<String, SensorsSnapshotAvro>> recovered = new HashMap<>();
+        partitions.forEach(partition -> recovered.put(partition, new HashMap<>()));
+
+        KafkaConfigProperties properties = kafkaConfig.getKafkaProperties();
+        if (!properties.isStateRecoveryEnabled() || partitions.isEmpty()) {
+            return recovered;
+        }
+
+        long started = System.nanoTime();
+        String eventsTopic = properties.getSensorEventsTopic();
+        String snapshotsTopic = properties.getSensorSnapshotsTopic();
+
+        try (KafkaConsumer<String, SensorsSnapshotAvro> consumer = kafkaConfig.createRecoveryConsumer()) {
+            int eventPartitionCount = consumer.partitionsFor(eventsTopic).size();
+            List<TopicPartition> sources = sourcePartitions(consumer, snapshotsTopic, partitions, eventPartitionCount);
+            if (sources.isEmpty()) {
+                return recovered;
+            }
+
+            consumer.assign(sources);
+            consumer.seekToBeginning(sources);
+            Map<TopicPartition, Long> endOffsets = new HashMap<>(consumer.endOffsets(sources));
+            endOffsets.entrySet().removeIf(entry -> consumer.position(entry.getKey()) >= entry.getValue());
+
+            while (!endOffsets.isEmpty()) {
+                for (ConsumerRecord<String, SensorsSnapshotAvro> record :
+                        consumer.poll(Duration.ofMillis(properties.getConsumeAttemptTimeout()))) {
+                    SensorsSnapshotAvro snapshot = record.value();
+                    Map<String, SensorsSnapshotAvro> snapshots = recovered.get(
+                            new TopicPartition(eventsTopic, partitionOf(snapshot.getHubId(), eventPartitionCount)));
+                    if (snapshots != null) {
+                        snapshot.setSensorsState(new HashMap<>(snapshot.getSensorsState()));
+                        snapshots.put(snapshot.getHubId(), snapshot);
+                    }
+                }
+                endOffsets.entrySet().removeIf(entry -> consumer.position(entry.getKey()) >= entry.getValue());
+            }
+        }
+
+        log.info("Recovered {} hub snapshots for partitions {} in {} ms",
+                recovered.values().stream().mapToInt(Map::size).sum(),
+                partitions,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return recovered;
+    }
+
+    // При одинаковом числе партиций топики разбиты по хабам одинаково и читать нужно только
+    // соответствующие партиции снимков, иначе просматриваются все
+    private List<TopicPartition> sourcePartitions(KafkaConsumer<String, SensorsSnapshotAvro> consumer,
+                                                  String snapshotsTopic,
+                                                  Collection<TopicPartition> partitions,
+                                                  int eventPartitionCount) {
+        List<PartitionInfo> infos = consumer.partitionsFor(snapshotsTopic);
+        List<TopicPartition> sources = new ArrayList<>();
+        if (infos == null || infos.isEmpty()) {
+            return sources;
+        }
+        if (infos.size() == eventPartitionCount) {
+            partitions.forEach(partition -> sources.add(new TopicPartition(snapshotsTopic, partition.partition())));
+        } else {
+            infos.forEach(info -> sources.add(new TopicPartition(snapshotsTopic, info.partition())));
+        }
+        return sources;
+    }
+
+    // Совпадает с выбором партиции продюсером Kafka для записи с ключом hubId
+    private static int partitionOf(String hubId, int partitionCount) {
+        return Utils.toPositive(Utils.murmur2(hubId.getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+}
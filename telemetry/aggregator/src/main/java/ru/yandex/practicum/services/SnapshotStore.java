@@ -0,0 +1,28 @@
+package ru.yandex.practicum.services;
+
+import org.apache.kafka.common.TopicPartition;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Хранилище снимков хабов, разложенных по партициям топика событий
+public interface SnapshotStore {
+
+    SensorsSnapshotAvro get(TopicPartition partition, String hubId);
+
+    void put(TopicPartition partition, SensorsSnapshotAvro snapshot);
+
+    void assign(TopicPartition partition, Map<String, SensorsSnapshotAvro> snapshots);
+
+    // Возвращает идентификаторы хабов освобождённой партиции
+    Collection<String> release(TopicPartition partition);
+
+    // Вызывается, когда снимок хаба вытесняется из кучи, в потоке, владеющем его партицией
+    default void setEvictionListener(Consumer<String> listener) {
+    }
+
+    default void close() {
+    }
+}
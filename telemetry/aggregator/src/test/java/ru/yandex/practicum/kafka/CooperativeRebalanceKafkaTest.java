@@ -0,0 +1,88 @@
+package ru.yandex.practicum.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Второй обработчик в группе забирает часть партиций: у первого отзываются только они,
+// а не все назначенные, как при жадной перебалансировке
+@EmbeddedKafka(partitions = 4, kraft = false, topics = CooperativeRebalanceKafkaTest.TOPIC)
+class CooperativeRebalanceKafkaTest {
+
+    static final String TOPIC = "telemetry.sensors.rebalance";
+
+    @Test
+    void joiningWorkerRevokesOnlyMovedPartitions(EmbeddedKafkaBroker broker) {
+        KafkaConfig kafkaConfig = new KafkaConfig(properties(broker));
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        try (KafkaConsumer<String, SensorEventAvro> firstConsumer = kafkaConfig.createKafkaConsumer(0);
+             KafkaConsumer<String, SensorEventAvro> secondConsumer = kafkaConfig.createKafkaConsumer(1)) {
+            firstConsumer.subscribe(List.of(TOPIC), first);
+            pollUntil(() -> first.assigned.size() == 4, firstConsumer);
+
+            secondConsumer.subscribe(List.of(TOPIC), second);
+            pollUntil(() -> first.assigned.size() + second.assigned.size() == 4 && !second.assigned.isEmpty(),
+                    firstConsumer, secondConsumer);
+
+            assertThat(first.revoked).hasSameSizeAs(second.assigned).containsExactlyInAnyOrderElementsOf(
+                    second.assigned);
+            assertThat(first.assigned).hasSize(4 - second.assigned.size());
+        }
+    }
+
+    @SafeVarargs
+    private static void pollUntil(BooleanSupplier condition,
+                                  KafkaConsumer<String, SensorEventAvro>... consumers) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting for rebalance").isLessThan(deadline);
+            for (KafkaConsumer<String, SensorEventAvro> consumer : consumers) {
+                consumer.poll(Duration.ofMillis(100));
+            }
+        }
+    }
+
+    private static KafkaConfigProperties properties(EmbeddedKafkaBroker broker) {
+        KafkaConfigProperties properties = new KafkaConfigProperties();
+        properties.setBootstrapServers(broker.getBrokersAsString());
+        properties.setConsumerGroupId("aggregator-rebalance-test");
+        properties.setConsumerClientIdConfig("aggregator-rebalance-test");
+        properties.setConsumerKeyDeserializer(StringDeserializer.class.getName());
+        properties.setConsumerValueDeserializer(
+                "ru.yandex.practicum.kafka.telemetry.serialization.SensorEventDeserializer");
+        return properties;
+    }
+
+    // Текущие партиции участника и все отозванные у него
+    private static class RecordingListener implements ConsumerRebalanceListener {
+        private final Set<TopicPartition> assigned = new HashSet<>();
+        private final Set<TopicPartition> revoked = new HashSet<>();
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            assigned.addAll(partitions);
+        }
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            assigned.removeAll(partitions);
+            revoked.addAll(partitions);
+        }
+    }
+}
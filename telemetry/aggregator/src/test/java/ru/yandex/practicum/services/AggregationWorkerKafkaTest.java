@@ -0,0 +1,242 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.KafkaProducerConfig;
+import ru.yandex.practicum.kafka.KafkaSensorEventConsumer;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.serialization.AvroSerializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Обработчик партиций на встроенном брокере: смещения фиксируются только после подтверждения
+// снимков продюсером. Пропускная способность сравнивается с прежним путём (flush продюсера после
+// каждого снимка) на тех же событиях того же брокера
+@Slf4j
+@EmbeddedKafka(partitions = 1, kraft = false,
+        topics = {AggregationWorkerKafkaTest.COMMIT_TOPIC, AggregationWorkerKafkaTest.THROUGHPUT_TOPIC})
+class AggregationWorkerKafkaTest {
+
+    static final String COMMIT_TOPIC = "telemetry.sensors.commit";
+    static final String THROUGHPUT_TOPIC = "telemetry.sensors.throughput";
+
+    private static final int THROUGHPUT_EVENTS = 5_000;
+    // Нижняя граница с большим запасом: ловит возврат к синхронной отправке или фиксации на каждое событие
+    private static final double MIN_EVENTS_PER_SECOND = 1_000;
+
+    private AggregationWorker worker;
+    private Thread workerThread;
+
+    @AfterEach
+    void stopWorker() throws InterruptedException {
+        if (worker != null) {
+            worker.wakeup();
+            workerThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    @Test
+    void commitsOffsetsOnlyAfterSnapshotsAreAcknowledged(EmbeddedKafkaBroker broker) throws Exception {
+        KafkaConfigProperties properties = properties(broker, COMMIT_TOPIC, "aggregator-commit-test");
+        resetGroupOffset(broker, properties);
+        int events = 10;
+        produceEvents(broker, COMMIT_TOPIC, events);
+
+        MockProducer<String, SpecificRecordBase> producer =
+                new MockProducer<>(false, new StringSerializer(), new AvroSerializer());
+        startWorker(properties, producer);
+
+        awaitTrue(() -> producer.history().size() == events, "all snapshots sent");
+        // Снимки отправлены, но не подтверждены: смещение остаётся прежним
+        TimeUnit.MILLISECONDS.sleep(properties.getConsumeAttemptTimeout() * 5);
+        assertThat(committedOffset(broker, properties)).isZero();
+
+        for (int i = 0; i < events - 1; i++) {
+            producer.completeNext();
+        }
+        TimeUnit.MILLISECONDS.sleep(properties.getConsumeAttemptTimeout() * 5);
+        assertThat(committedOffset(broker, properties))
+                .as("offset is committed only when every snapshot of the batch is acknowledged")
+                .isLessThan(events);
+
+        producer.completeNext();
+        awaitTrue(() -> committedOffset(broker, properties) == events, "offsets committed after acknowledgement");
+    }
+
+    // Обе группы читают одни и те же события. Первым идёт обработчик, чтобы прогрев JVM
+    // не был в его пользу
+    @Test
+    void commitsAcknowledgedEventsFasterThanFlushPerRecord(EmbeddedKafkaBroker broker) throws Exception {
+        produceEvents(broker, THROUGHPUT_TOPIC, THROUGHPUT_EVENTS);
+
+        KafkaConfigProperties pipelined = properties(broker, THROUGHPUT_TOPIC, "aggregator-throughput-test");
+        resetGroupOffset(broker, pipelined);
+        long started = System.nanoTime();
+        startWorker(pipelined, new KafkaProducerConfig().kafkaProducer(pipelined));
+        awaitTrue(() -> committedOffset(broker, pipelined) == THROUGHPUT_EVENTS, "all events committed");
+        double pipelinedRate = THROUGHPUT_EVENTS / ((System.nanoTime() - started) / 1e9);
+
+        KafkaConfigProperties perRecord = properties(broker, THROUGHPUT_TOPIC, "aggregator-per-record-test");
+        resetGroupOffset(broker, perRecord);
+        started = System.nanoTime();
+        aggregateWithFlushPerRecord(perRecord);
+        assertThat(committedOffset(broker, perRecord)).isEqualTo(THROUGHPUT_EVENTS);
+        double perRecordRate = THROUGHPUT_EVENTS / ((System.nanoTime() - started) / 1e9);
+
+        log.info("Aggregated and committed {} events: {} events/s with acknowledged batch commits, "
+                        + "{} events/s with flush per record, ratio {}", THROUGHPUT_EVENTS,
+                String.format("%.0f", pipelinedRate), String.format("%.0f", perRecordRate),
+                String.format("%.1f", pipelinedRate / perRecordRate));
+        assertThat(pipelinedRate).isGreaterThan(MIN_EVENTS_PER_SECOND);
+        assertThat(pipelinedRate).isGreaterThan(perRecordRate);
+    }
+
+    private void startWorker(KafkaConfigProperties properties, Producer<String, SpecificRecordBase> producer) {
+        KafkaConfig kafkaConfig = new KafkaConfig(properties);
+        worker = new AggregationWorker(
+                new KafkaSensorEventConsumer(kafkaConfig.createKafkaConsumer(0), properties),
+                snapshotService(kafkaConfig, producer),
+                properties);
+        workerThread = new Thread(worker, "aggregation-worker-test");
+        workerThread.start();
+    }
+
+    // Путь обработки до конвейерной отправки снимков: после каждого снимка продюсер сбрасывается
+    // и ждёт подтверждения, смещения обработанных событий фиксируются асинхронно после каждого poll
+    private static void aggregateWithFlushPerRecord(KafkaConfigProperties properties) throws Exception {
+        KafkaConfig kafkaConfig = new KafkaConfig(properties);
+        TopicPartition partition = new TopicPartition(properties.getSensorEventsTopic(), 0);
+        KafkaSnapshotServiceImpl snapshotService =
+                snapshotService(kafkaConfig, new KafkaProducerConfig().kafkaProducer(properties));
+        try (KafkaConsumer<String, SensorEventAvro> consumer = kafkaConfig.createKafkaConsumer(0)) {
+            consumer.assign(List.of(partition));
+            snapshotService.onPartitionsAssigned(List.of(partition));
+            long deadline = System.nanoTime() + Duration.ofSeconds(120).toNanos();
+            long nextOffset = 0;
+            while (nextOffset < THROUGHPUT_EVENTS) {
+                assertThat(System.nanoTime()).as("timed out aggregating with flush per record").isLessThan(deadline);
+                for (ConsumerRecord<String, SensorEventAvro> record
+                        : consumer.poll(Duration.ofMillis(properties.getConsumeAttemptTimeout()))) {
+                    snapshotService.updateState(partition, record.value()).ifPresent(snapshot -> {
+                        snapshotService.collectSensorSnapshot(snapshot);
+                        snapshotService.flush();
+                    });
+                    nextOffset = record.offset() + 1;
+                }
+                consumer.commitAsync(Map.of(partition, new OffsetAndMetadata(nextOffset)), null);
+            }
+            consumer.commitSync(Map.of(partition, new OffsetAndMetadata(nextOffset)));
+        } finally {
+            snapshotService.close();
+        }
+    }
+
+    private static KafkaSnapshotServiceImpl snapshotService(KafkaConfig kafkaConfig,
+                                                            Producer<String, SpecificRecordBase> producer) {
+        KafkaSnapshotServiceImpl snapshotService = new KafkaSnapshotServiceImpl(producer, kafkaConfig,
+                new SnapshotDeltaTracker(kafkaConfig), new SnapshotStateRecovery(kafkaConfig),
+                new HeapSnapshotStore(), new SensorReadingIndex());
+        snapshotService.init();
+        return snapshotService;
+    }
+
+    private static KafkaConfigProperties properties(EmbeddedKafkaBroker broker, String topic, String groupId) {
+        KafkaConfigProperties properties = new KafkaConfigProperties();
+        properties.setBootstrapServers(broker.getBrokersAsString());
+        properties.setProducerClientIdConfig(groupId + "-producer");
+        properties.setProducerKeySerializer(StringSerializer.class.getName());
+        properties.setProducerValueSerializer(AvroSerializer.class.getName());
+        properties.setProducerLingerMs(5);
+        properties.setProducerBatchSize(65536);
+        properties.setProducerCompressionType("lz4");
+        properties.setConsumerGroupId(groupId);
+        properties.setConsumerClientIdConfig(groupId + "-consumer");
+        properties.setConsumerKeyDeserializer("org.apache.kafka.common.serialization.StringDeserializer");
+        properties.setConsumerValueDeserializer(
+                "ru.yandex.practicum.kafka.telemetry.serialization.SensorEventDeserializer");
+        properties.setConsumeAttemptTimeout(100);
+        properties.setSensorEventsTopic(topic);
+        properties.setSensorSnapshotsTopic(topic + ".snapshots");
+        return properties;
+    }
+
+    // Группа начинает с начала топика: consumer обработчика читает с последнего смещения
+    private static void resetGroupOffset(EmbeddedKafkaBroker broker, KafkaConfigProperties properties)
+            throws Exception {
+        try (Admin admin = admin(broker)) {
+            admin.alterConsumerGroupOffsets(properties.getConsumerGroupId(),
+                            Map.of(new TopicPartition(properties.getSensorEventsTopic(), 0), new OffsetAndMetadata(0)))
+                    .all().get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    // Показания каждого события отличаются от предыдущих, поэтому каждое событие даёт снимок
+    private static void produceEvents(EmbeddedKafkaBroker broker, String topic, int count) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class.getName());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        try (KafkaProducer<String, SpecificRecordBase> producer = new KafkaProducer<>(props)) {
+            Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+            for (int i = 0; i < count; i++) {
+                String hubId = "hub-" + i % 100;
+                SensorEventAvro event = new SensorEventAvro("sensor-" + i % 7, hubId, timestamp.plusMillis(i),
+                        new ClimateSensorAvro(i, 40, 600));
+                producer.send(new ProducerRecord<>(topic, hubId, event));
+            }
+            producer.flush();
+        }
+    }
+
+    private static long committedOffset(EmbeddedKafkaBroker broker, KafkaConfigProperties properties) {
+        try (Admin admin = admin(broker)) {
+            OffsetAndMetadata committed = admin.listConsumerGroupOffsets(properties.getConsumerGroupId())
+                    .partitionsToOffsetAndMetadata()
+                    .get(30, TimeUnit.SECONDS)
+                    .get(new TopicPartition(properties.getSensorEventsTopic(), 0));
+            return committed == null ? -1 : committed.offset();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read committed offset", e);
+        }
+    }
+
+    private static Admin admin(EmbeddedKafkaBroker broker) {
+        return Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting for: " + description).isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+}
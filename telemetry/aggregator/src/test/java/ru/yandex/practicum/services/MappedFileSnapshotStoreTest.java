@@ -0,0 +1,133 @@
+package ru.yandex.practicum.services;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFileSnapshotStoreTest {
+
+    private static final TopicPartition P0 = new TopicPartition("telemetry.sensors.v1", 0);
+    private static final TopicPartition P1 = new TopicPartition("telemetry.sensors.v1", 1);
+
+    @TempDir
+    Path directory;
+
+    private MappedFileSnapshotStore store;
+    private final AtomicInteger evicted = new AtomicInteger();
+
+    @AfterEach
+    void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void storesSnapshotsAcrossSeveralRegions() {
+        store = store(4, 1);
+        int hubs = 20_000;
+        for (int hub = 0; hub < hubs; hub++) {
+            store.put(P0, snapshot("hub-" + hub, hub));
+        }
+
+        assertThat(evicted).hasValue(hubs - 1);
+        for (int hub = 0; hub < hubs; hub++) {
+            assertThat(store.get(P0, "hub-" + hub)).isEqualTo(snapshot("hub-" + hub, hub));
+        }
+    }
+
+    @Test
+    void compactsOverwrittenSnapshots() {
+        store = store(1, 1);
+        int hubs = 1_000;
+        // Записей в сумме намного больше файла, живых - малая часть
+        for (int round = 0; round < 50; round++) {
+            for (int hub = 0; hub < hubs; hub++) {
+                store.put(P0, snapshot("hub-" + hub, round));
+            }
+        }
+
+        for (int hub = 0; hub < hubs; hub++) {
+            assertThat(store.get(P0, "hub-" + hub)).isEqualTo(snapshot("hub-" + hub, 49));
+        }
+    }
+
+    @Test
+    void keepsSnapshotsOnHeapWhenFileIsFull() {
+        store = store(1, 1);
+        int hubs = 30_000;
+        for (int hub = 0; hub < hubs; hub++) {
+            store.put(P0, snapshot("hub-" + hub, hub));
+        }
+
+        assertThat(evicted.get()).isLessThan(hubs - 1);
+        for (int hub = 0; hub < hubs; hub++) {
+            assertThat(store.get(P0, "hub-" + hub)).isEqualTo(snapshot("hub-" + hub, hub));
+        }
+    }
+
+    @Test
+    void releasedPartitionFreesFileSpace() {
+        store = store(1, 1);
+        for (int hub = 0; hub < 30_000; hub++) {
+            store.put(P0, snapshot("hub-" + hub, hub));
+        }
+        store.release(P0);
+
+        int before = evicted.get();
+        for (int hub = 0; hub < 1_000; hub++) {
+            store.put(P1, snapshot("other-" + hub, hub));
+        }
+
+        assertThat(evicted.get() - before).isEqualTo(999);
+        assertThat(store.get(P1, "other-0")).isEqualTo(snapshot("other-0", 0));
+    }
+
+    @Test
+    void assignedSnapshotsAreReadable() {
+        store = store(1, 1);
+        Map<String, SensorsSnapshotAvro> recovered = new HashMap<>();
+        for (int hub = 0; hub < 100; hub++) {
+            recovered.put("hub-" + hub, snapshot("hub-" + hub, hub));
+        }
+
+        store.assign(P0, recovered);
+
+        recovered.forEach((hubId, snapshot) -> assertThat(store.get(P0, hubId)).isEqualTo(snapshot));
+        assertThat(store.get(P0, "unknown")).isNull();
+    }
+
+    private MappedFileSnapshotStore store(int sizeMb, int regionMb) {
+        KafkaConfigProperties properties = new KafkaConfigProperties();
+        properties.setSnapshotStorePath(directory.resolve("snapshots.bin").toString());
+        properties.setSnapshotStoreSizeMb(sizeMb);
+        properties.setSnapshotStoreRegionMb(regionMb);
+        properties.setSnapshotStoreHotHubs(1);
+        MappedFileSnapshotStore snapshotStore = new MappedFileSnapshotStore(new KafkaConfig(properties));
+        snapshotStore.setEvictionListener(hubId -> evicted.incrementAndGet());
+        return snapshotStore;
+    }
+
+    private static SensorsSnapshotAvro snapshot(String hubId, int temperature) {
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        for (int sensor = 0; sensor < 3; sensor++) {
+            states.put("sensor-" + sensor, new SensorStateAvro(timestamp, new ClimateSensorAvro(temperature, 40, 600)));
+        }
+        return new SensorsSnapshotAvro(hubId, timestamp, states);
+    }
+}
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import ru.yandex.practicum.kafka.KafkaConfig;
+import ru.yandex.practicum.kafka.KafkaConfigProperties;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
+import ru.yandex.practicum.kafka.telemetry.serialization.AvroSerializer;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Восстановление снимков хабов из топика снимков на встроенном брокере. Число хабов задаётся
+// -Drecovery.hubs, время восстановления пишется в лог в пересчёте на миллион хабов
+@Slf4j
+@EmbeddedKafka(partitions = 4, kraft = false,
+        topics = {SnapshotStateRecoveryKafkaTest.EVENTS_TOPIC, SnapshotStateRecoveryKafkaTest.SNAPSHOTS_TOPIC})
+class SnapshotStateRecoveryKafkaTest {
+
+    static final String EVENTS_TOPIC = "telemetry.sensors.recovery";
+    static final String SNAPSHOTS_TOPIC = "telemetry.snapshots.recovery";
+
+    private static final int HUBS = Integer.getInteger("recovery.hubs", 50_000);
+    private static final int SENSORS_PER_HUB = 5;
+
+    @Test
+    void recoversLatestSnapshotOfEveryHub(EmbeddedKafkaBroker broker) {
+        KafkaConfigProperties properties = properties(broker);
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        try (KafkaProducer<String, SpecificRecordBase> producer = producer(broker)) {
+            for (int hub = 0; hub < HUBS; hub++) {
+                producer.send(new ProducerRecord<>(SNAPSHOTS_TOPIC, "hub-" + hub, snapshot("hub-" + hub, timestamp, 0)));
+            }
+            // Более новые снимки части хабов: восстанавливается последний
+            for (int hub = 0; hub < HUBS; hub += 10) {
+                producer.send(new ProducerRecord<>(SNAPSHOTS_TOPIC, "hub-" + hub,
+                        snapshot("hub-" + hub, timestamp.plusSeconds(1), 1)));
+            }
+            producer.flush();
+        }
+
+        List<TopicPartition> partitions = IntStream.range(0, 4)
+                .mapToObj(partition -> new TopicPartition(EVENTS_TOPIC, partition))
+                .toList();
+        long started = System.nanoTime();
+        Map<TopicPartition, Map<String, SensorsSnapshotAvro>> recovered =
+                new SnapshotStateRecovery(new KafkaConfig(properties)).recover(partitions);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        log.info("Recovered {} hubs in {} s ({} s per million hubs)", HUBS,
+                String.format("%.2f", seconds), String.format("%.1f", seconds * 1_000_000 / HUBS));
+        assertThat(recovered.values().stream().mapToInt(Map::size).sum()).isEqualTo(HUBS);
+        SensorsSnapshotAvro updated = recovered.values().stream()
+                .map(snapshots -> snapshots.get("hub-0"))
+                .filter(snapshot -> snapshot != null)
+                .findFirst()
+                .orElseThrow();
+        assertThat(updated.getTimestamp()).isEqualTo(timestamp.plusSeconds(1));
+        assertThat(((ClimateSensorAvro) updated.getSensorsState().get("sensor-0").getData()).getTemperatureC())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void publishesFullSnapshotAlongsideDeltaWhenRecoveryIsEnabled(EmbeddedKafkaBroker broker) {
+        KafkaConfigProperties properties = properties(broker);
+        properties.setDeltaSnapshotsEnabled(true);
+        properties.setSensorSnapshotDeltasTopic(SNAPSHOTS_TOPIC + ".delta");
+        properties.setSnapshotKeyframeInterval(100);
+        KafkaConfig kafkaConfig = new KafkaConfig(properties);
+        MockProducer<String, SpecificRecordBase> producer =
+                new MockProducer<>(true, new StringSerializer(), new AvroSerializer());
+        KafkaSnapshotServiceImpl snapshotService = new KafkaSnapshotServiceImpl(producer, kafkaConfig,
+                new SnapshotDeltaTracker(kafkaConfig), new SnapshotStateRecovery(kafkaConfig),
+                new HeapSnapshotStore(), new SensorReadingIndex());
+
+        snapshotService.collectSensorSnapshot(snapshot("hub-1", Instant.now(), 0)).join();
+
+        assertThat(producer.history()).extracting(ProducerRecord::topic)
+                .containsExactlyInAnyOrder(SNAPSHOTS_TOPIC + ".delta", SNAPSHOTS_TOPIC);
+        assertThat(producer.history()).extracting(ProducerRecord::value)
+                .hasAtLeastOneElementOfType(SensorsSnapshotDeltaAvro.class)
+                .hasAtLeastOneElementOfType(SensorsSnapshotAvro.class);
+    }
+
+    private static SensorsSnapshotAvro snapshot(String hubId, Instant timestamp, int temperature) {
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        for (int sensor = 0; sensor < SENSORS_PER_HUB; sensor++) {
+            states.put("sensor-" + sensor,
+                    new SensorStateAvro(timestamp, new ClimateSensorAvro(temperature, 40, 600)));
+        }
+        return new SensorsSnapshotAvro(hubId, timestamp, states);
+    }
+
+    private static KafkaConfigProperties properties(EmbeddedKafkaBroker broker) {
+        KafkaConfigProperties properties = new KafkaConfigProperties();
+        properties.setBootstrapServers(broker.getBrokersAsString());
+        properties.setConsumerClientIdConfig("aggregator-recovery-test");
+        properties.setConsumerKeyDeserializer("org.apache.kafka.common.serialization.StringDeserializer");
+        properties.setSnapshotValueDeserializer(
+                "ru.yandex.practicum.kafka.telemetry.serialization.SensorsSnapshotDeserializer");
+        properties.setConsumeAttemptTimeout(100);
+        properties.setSensorEventsTopic(EVENTS_TOPIC);
+        properties.setSensorSnapshotsTopic(SNAPSHOTS_TOPIC);
+        properties.setStateRecoveryEnabled(true);
+        return properties;
+    }
+
+    private static KafkaProducer<String, SpecificRecordBase> producer(EmbeddedKafkaBroker broker) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class.getName());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, 262144);
+        return new KafkaProducer<>(props);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.model.Condition;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Проверка условий сценария по снимку: прежний разбор показаний через instanceof и Integer
+// на каждую проверку против скомпилированных CompiledCondition. Каждое условие - на своём датчике,
+// типы датчиков и условий чередуются, чтобы место вызова видело все поля показаний.
+// Логирование каждой проверки из прежней реализации сюда не перенесено — сравнивается только вычисление
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionEvaluationBenchmark {
+
+    @Param({"5", "100", "500"})
+    public int conditionCount;
+
+    private SensorsSnapshotAvro snapshot;
+    private Map<String, Condition> conditions;
+    private List<CompiledCondition> compiled;
+
+    @Setup
+    public void setUp() {
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        Map<String, DeviceTypeAvro> deviceTypes = new HashMap<>();
+        // Все условия выполняются, чтобы проверка не прерывалась на первом
+        conditions = new LinkedHashMap<>();
+        for (int i = 0; i < conditionCount; i++) {
+            String sensorId = "sensor-" + i;
+            switch (i % 4) {
+                case 0 -> {
+                    states.put(sensorId, new SensorStateAvro(timestamp, new ClimateSensorAvro(20, 40, 600)));
+                    deviceTypes.put(sensorId, DeviceTypeAvro.CLIMATE_SENSOR);
+                    conditions.put(sensorId, i % 8 == 0
+                            ? condition(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 15)
+                            : condition(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.LOWER_THAN, 30));
+                }
+                case 1 -> {
+                    states.put(sensorId, new SensorStateAvro(timestamp, new LightSensorAvro(0, 300)));
+                    deviceTypes.put(sensorId, DeviceTypeAvro.LIGHT_SENSOR);
+                    conditions.put(sensorId,
+                            condition(ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.LOWER_THAN, 500));
+                }
+                case 2 -> {
+                    states.put(sensorId, new SensorStateAvro(timestamp, new MotionSensorAvro(0, true, 0)));
+                    deviceTypes.put(sensorId, DeviceTypeAvro.MOTION_SENSOR);
+                    conditions.put(sensorId, condition(ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1));
+                }
+                default -> {
+                    states.put(sensorId, new SensorStateAvro(timestamp, new SwitchSensorAvro(false)));
+                    deviceTypes.put(sensorId, DeviceTypeAvro.SWITCH_SENSOR);
+                    conditions.put(sensorId, condition(ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, 0));
+                }
+            }
+        }
+        snapshot = new SensorsSnapshotAvro("hub-1", timestamp, states);
+
+        ConditionCompiler compiler = new ConditionCompiler();
+        compiled = new ArrayList<>();
+        conditions.forEach((sensorId, condition) ->
+                compiled.add(compiler.compile(sensorId, condition, deviceTypes.get(sensorId))));
+    }
+
+    @Benchmark
+    public boolean interpreted() {
+        for (Map.Entry<String, Condition> entry : conditions.entrySet()) {
+            if (!checkCondition(entry.getKey(), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        for (CompiledCondition condition : compiled) {
+            if (!condition.test(snapshot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkCondition(String sensorId, Condition condition) {
+        Integer sensorValue = extractSensorValue(sensorId);
+        if (sensorValue == null) {
+            return false;
+        }
+        return switch (condition.getOperation()) {
+            case EQUALS -> sensorValue.equals(condition.getValue());
+            case GREATER_THAN -> sensorValue > condition.getValue();
+            case LOWER_THAN -> sensorValue < condition.getValue();
+        };
+    }
+
+    private Integer extractSensorValue(String sensorId) {
+        SensorStateAvro sensorState = snapshot.getSensorsState().get(sensorId);
+        if (sensorState == null || sensorState.getData() == null) {
+            return null;
+        }
+
+        Object data = sensorState.getData();
+        if (data instanceof ClimateSensorAvro climateSensor) {
+            return climateSensor.getTemperatureC();
+        } else if (data instanceof LightSensorAvro lightSensor) {
+            return lightSensor.getLuminosity();
+        } else if (data instanceof MotionSensorAvro motionSensor) {
+            return motionSensor.getMotion() ? 1 : 0;
+        } else if (data instanceof SwitchSensorAvro switchSensor) {
+            return switchSensor.getState() ? 1 : 0;
+        }
+        return null;
+    }
+
+    private static Condition condition(ConditionTypeAvro type, ConditionOperationAvro operation, int value) {
+        return Condition.builder()
+                .type(type)
+                .operation(operation)
+                .value(value)
+                .build();
+    }
+}
@@ -1,9 +1,11 @@
 package ru.yandex.practicum;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.AnalyzerProperties;
 import ru.yandex.practicum.processors.HubEventProcessor;
 import ru.yandex.practicum.processors.SnapshotProcessor;
 
@@ -14,25 +16,49 @@ public class AnalyzerRunner implements CommandLineRunner {
 
     private final HubEventProcessor hubEventProcessor;
     private final SnapshotProcessor snapshotProcessor;
+    private final AnalyzerProperties analyzerProperties;
 
+    private Thread hubEventsThread;
+    private Thread snapshotThread;
+
+    // Потоки циклов poll() не демоны: они держат JVM, а при остановке контекста (SIGTERM)
+    // завершаются через shutdown() до того, как закроются consumer'ы и клиент hub router
     @Override
-    public void run(String... args) throws Exception {
+    public void run(String... args) {
         log.info("Starting Analyzer application...");
 
-        Thread hubEventsThread = new Thread(hubEventProcessor, "hub-event-processor");
-        hubEventsThread.setDaemon(true);
+        hubEventsThread = new Thread(hubEventProcessor, "hub-event-processor");
         hubEventsThread.start();
 
-        Thread snapshotThread = new Thread(snapshotProcessor, "snapshot-processor");
-        snapshotThread.setDaemon(true);
+        snapshotThread = new Thread(snapshotProcessor, "snapshot-processor");
         snapshotThread.start();
 
         log.info("Kafka processors started successfully");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Stopping Kafka processors...");
+        hubEventProcessor.shutdown();
+        snapshotProcessor.shutdown();
 
+        // Анализ принятых снимков ограничен drainTimeout, сверху запас на фиксацию смещений и закрытие
+        long timeout = analyzerProperties.getProcessing().getDrainTimeout().toMillis() + 10_000;
+        join(hubEventsThread, timeout);
+        join(snapshotThread, timeout);
+        log.info("Kafka processors stopped");
+    }
+
+    private void join(Thread thread, long timeoutMillis) {
+        if (thread == null) {
+            return;
+        }
         try {
-            Thread.currentThread().join();
+            thread.join(timeoutMillis);
+            if (thread.isAlive()) {
+                log.warn("Thread {} did not stop in {} ms", thread.getName(), timeoutMillis);
+            }
         } catch (InterruptedException e) {
-            log.info("Analyzer application interrupted");
             Thread.currentThread().interrupt();
         }
     }
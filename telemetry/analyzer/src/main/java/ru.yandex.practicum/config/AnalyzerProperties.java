@@ -0,0 +1,108 @@
+package ru.yandex.practicum.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "analyzer")
+public class AnalyzerProperties {
+    private Evaluation evaluation = new Evaluation();
+    private Firing firing = new Firing();
+    private HubRouter hubRouter = new HubRouter();
+    private Coalescing coalescing = new Coalescing();
+    private Processing processing = new Processing();
+    private Storage storage = new Storage();
+    private HubEvents hubEvents = new HubEvents();
+
+    @Data
+    public static class Evaluation {
+        // Проверять только сценарии, условия которых ссылаются на датчики с новыми показаниями
+        private boolean incremental;
+    }
+
+    @Data
+    public static class Firing {
+        // LEVEL - действия выполняются при каждом снимке, в котором условия сценария выполнены,
+        // EDGE - только при переходе условий сценария из невыполненных в выполненные
+        private FiringMode mode = FiringMode.LEVEL;
+        // Минимальный интервал между срабатываниями одного сценария по времени снимков
+        private Duration minRefireInterval = Duration.ZERO;
+        // Интервалы отдельных сценариев по имени, вместо minRefireInterval
+        private Map<String, Duration> scenarioRefireIntervals = new HashMap<>();
+    }
+
+    @Data
+    public static class HubRouter {
+        // UNARY - вызов handleDeviceAction на каждое действие, STREAM - общий поток StreamDeviceActions
+        private HubRouterTransport transport = HubRouterTransport.UNARY;
+        // Максимум одновременных вызовов hub router, действия одного хаба отправляются по одному
+        private int maxInFlight = 64;
+        // Максимум неотправленных действий одного хаба: при переполнении поток анализа ждёт места
+        private int maxPendingPerHub = 1000;
+        private Duration deadline = Duration.ofSeconds(5);
+        // Повторы вызова при UNAVAILABLE с экспоненциальной задержкой
+        private int maxRetries = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        // STREAM: hub router подтверждает записанные действия только завершением потока, поэтому
+        // поток закрывается через это время или после стольких действий и открывается заново
+        private Duration streamLifetime = Duration.ofSeconds(10);
+        private int streamBatchSize = 500;
+    }
+
+    @Data
+    public static class Coalescing {
+        // Объединять действия сценариев снимка по устройству и не повторять уже отправленную команду
+        private boolean enabled;
+        // Через это время та же команда устройству отправляется снова: его состояние могли изменить вручную
+        private Duration commandTtl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Processing {
+        // Число потоков анализа снимков, снимки хаба всегда обрабатывает один поток (по хешу hubId).
+        // При 1 снимки анализируются в потоке poll()
+        private int lanes = 1;
+        // Максимум снимков, принятых из Kafka и ещё не проанализированных
+        private int maxInFlight = 1000;
+        // Сколько ждать анализа принятых снимков перед фиксацией смещений при ребалансировке и остановке
+        private Duration drainTimeout = Duration.ofSeconds(30);
+        // Потоки анализа снимков и обработки ответов hub router. VIRTUAL требует Java 21+,
+        // на более старой JVM используются обычные потоки
+        private ThreadModel threads = ThreadModel.PLATFORM;
+    }
+
+    @Data
+    public static class Storage {
+        // Читать сценарии хаба из закодированного столбца scenarios.rules одним запросом,
+        // а не из связанных таблиц условий и действий. Записывается столбец всегда
+        private boolean encodedRules;
+    }
+
+    @Data
+    public static class HubEvents {
+        // Применять события хабов из одного poll() в одной транзакции, при ошибке - по одному
+        private boolean batchTransaction;
+        // Сводить события пакета по устройству и сценарию хаба к последнему (HubEventCompactor)
+        private boolean compaction;
+    }
+
+    public enum FiringMode {
+        LEVEL,
+        EDGE
+    }
+
+    public enum HubRouterTransport {
+        UNARY,
+        STREAM
+    }
+
+    public enum ThreadModel {
+        PLATFORM,
+        VIRTUAL
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Создаёт потоки для анализа снимков и обработки ответов hub router. Сервис собирается под Java 17,
+// поэтому виртуальные потоки создаются через reflection, если JVM их поддерживает
+@Slf4j
+@Component
+public class ProcessingThreads {
+
+    private final boolean virtual;
+
+    public ProcessingThreads(AnalyzerProperties analyzerProperties) {
+        boolean requested = analyzerProperties.getProcessing().getThreads() == AnalyzerProperties.ThreadModel.VIRTUAL;
+        this.virtual = requested && virtualThreadFactory("virtual-thread-probe") != null;
+        if (requested && !virtual) {
+            log.warn("Virtual threads are not supported by this JVM ({}), using platform threads",
+                    Runtime.version());
+        }
+        log.info("Processing threads: {}", virtual ? "virtual" : "platform");
+    }
+
+    // Фабрика одного именованного потока, например для дорожки анализа снимков
+    public ThreadFactory namedThread(String name) {
+        if (virtual) {
+            return virtualThreadFactory(name);
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Пул для коротких задач: новый виртуальный поток на задачу или кеширующий пул обычных потоков
+    public ExecutorService newTaskExecutor(String prefix) {
+        if (virtual) {
+            try {
+                Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) perTask.invoke(null, virtualThreadFactory(prefix + "-"));
+            } catch (ReflectiveOperationException e) {
+                log.warn("Failed to create virtual thread executor, using platform threads", e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = name.endsWith("-")
+                    ? builderType.getMethod("name", String.class, long.class).invoke(builder, name, 0L)
+                    : builderType.getMethod("name", String.class).invoke(builder, name);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
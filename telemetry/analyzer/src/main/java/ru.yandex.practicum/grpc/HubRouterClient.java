@@ -1,26 +1,115 @@
 package ru.yandex.practicum.grpc;
 
-import lombok.RequiredArgsConstructor;
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.config.ProcessingThreads;
 import ru.yandex.practicum.model.Action;
 import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
 import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
+// Действия ставятся в очередь своего хаба и отправляются асинхронно: у каждого хаба не больше
+// одного вызова в полёте (порядок действий сохраняется), всего не больше maxInFlight вызовов.
+// Поток анализа снимков сетевых ответов не ждёт, но ждёт места в переполненной очереди хаба:
+// действия не отбрасываются, иначе более старая команда устройству потерялась бы ради более новой
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class HubRouterClient {
 
     @GrpcClient("hub-router")
-    private HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub;
+    private HubRouterControllerGrpc.HubRouterControllerStub hubRouterStub;
 
-    public void sendDeviceAction(String hubId, String scenarioName, String sensorId, Action action) {
+    private final AnalyzerProperties.HubRouter properties;
+    private final ScheduledExecutorService retryScheduler;
+    // Ответы hub router и запуск следующих действий выполняются здесь, а не в потоках транспорта gRPC
+    private final ExecutorService callbackExecutor;
+    private final Duration drainTimeout;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter droppedCounter;
+
+    private final Map<String, HubQueue> hubs = new HashMap<>();
+    private final Deque<HubQueue> ready = new ArrayDeque<>();
+    // STREAM: действия, выбранные из очередей хабов и ждущие готовности потока к записи
+    private final Deque<Dispatch> outbox = new ArrayDeque<>();
+    private int inFlight;
+    private int pending;
+    private int unacknowledged;
+    private boolean closed;
+
+    // Общий поток StreamDeviceActions, открывается при первом действии и после сбоя или закрытия.
+    // Запись в поток и разбор его сбоя выполняются под streamLock, затем под this
+    private final Object streamLock = new Object();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private ActionStream actionStream;
+    private int streamFailures;
+    private long streamRetryAt;
+
+    public HubRouterClient(AnalyzerProperties analyzerProperties, ProcessingThreads processingThreads,
+                           MeterRegistry meterRegistry) {
+        this.properties = analyzerProperties.getHubRouter();
+        this.callbackExecutor = processingThreads.newTaskExecutor("hub-router-callback");
+        this.drainTimeout = analyzerProperties.getProcessing().getDrainTimeout();
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hub-router-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.successTimer = Timer.builder("analyzer.hub.router.dispatch")
+                .description("Device action dispatch latency, including retries")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("analyzer.hub.router.dispatch")
+                .description("Device action dispatch latency, including retries")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("analyzer.hub.router.dropped")
+                .description("Device actions rejected because the client was stopping while the hub queue was full")
+                .register(meterRegistry);
+        Gauge.builder("analyzer.hub.router.in.flight", this, HubRouterClient::getInFlight)
+                .description("Device action calls in flight")
+                .register(meterRegistry);
+        Gauge.builder("analyzer.hub.router.pending", this, HubRouterClient::getPending)
+                .description("Device actions waiting for dispatch")
+                .register(meterRegistry);
+        Gauge.builder("analyzer.hub.router.unacknowledged", this, HubRouterClient::getUnacknowledged)
+                .description("Device actions written to the stream and not yet acknowledged")
+                .register(meterRegistry);
+    }
+
+    // Результат завершается, когда hub router подтвердил действие, и с ошибкой, если оно не отправлено
+    public CompletableFuture<Void> sendDeviceAction(String hubId, String scenarioName, String sensorId,
+                                                    Action action) {
         try {
             DeviceActionProto.Builder actionBuilder = DeviceActionProto.newBuilder()
                     .setSensorId(sensorId)
@@ -30,24 +119,526 @@ public class HubRouterClient {
             }
             DeviceActionProto actionProto = actionBuilder.build();
 
+            Instant now = Instant.now();
             DeviceActionRequest request = DeviceActionRequest.newBuilder()
                     .setHubId(hubId)
                     .setScenarioName(scenarioName)
                     .setAction(actionProto)
                     .setTimestamp(com.google.protobuf.Timestamp.newBuilder()
-                            .setSeconds(Instant.now().getEpochSecond())
-                            .setNanos(Instant.now().getNano())
+                            .setSeconds(now.getEpochSecond())
+                            .setNanos(now.getNano())
                             .build())
                     .build();
 
-            log.info("Sending device action to hub {}: device={}, type={}, value={}",
+            log.info("Queueing device action for hub {}: device={}, type={}, value={}",
                     hubId, sensorId, action.getType(), action.getValue());
+            PendingAction pendingAction = new PendingAction(request, System.nanoTime());
+            enqueue(hubId, pendingAction);
+            return pendingAction.result;
+        } catch (Exception e) {
+            log.error("Error sending command to device", e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            hubRouterStub.handleDeviceAction(request);
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
 
-            log.info("Device action sent successfully");
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    public synchronized int getUnacknowledged() {
+        return unacknowledged;
+    }
+
+    // Контекст закрывается после остановки процессоров, новых действий уже нет: ждём отправки
+    // очереди и ответов на вызовы в полёте, закрываем поток, ждём его подтверждения, затем закрываем пулы
+    @PreDestroy
+    public void shutdown() {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        await(() -> inFlight + pending == 0, deadline);
+        synchronized (streamLock) {
+            if (actionStream != null) {
+                closeStream(actionStream);
+            }
+        }
+        await(() -> unacknowledged == 0, deadline);
+        synchronized (this) {
+            if (inFlight + pending + unacknowledged > 0) {
+                log.warn("Hub router client stopped with {} actions in flight, {} pending and {} unacknowledged",
+                        inFlight, pending, unacknowledged);
+            }
+        }
+        retryScheduler.shutdownNow();
+        callbackExecutor.shutdown();
+    }
+
+    private synchronized void await(BooleanSupplier done, long deadline) {
+        try {
+            while (!done.getAsBoolean()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return;
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(String hubId, PendingAction action) {
+        Exception rejection = null;
+        synchronized (this) {
+            HubQueue queue = hubs.computeIfAbsent(hubId, HubQueue::new);
+            // Хаб не успевает принимать команды: ждём, пока отправка освободит место в его очереди.
+            // Опустевшая очередь удаляется из hubs, поэтому после ожидания берётся заново
+            while (queue.actions.size() >= properties.getMaxPendingPerHub()) {
+                if (closed) {
+                    droppedCounter.increment();
+                    log.warn("Hub router client is stopping, rejecting action for hub {}: {}", hubId,
+                            action.request.getAction());
+                    rejection = new IllegalStateException("Hub router client is stopping");
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCounter.increment();
+                    log.warn("Interrupted while waiting for room in the queue of hub {}, rejecting action: {}",
+                            hubId, action.request.getAction());
+                    rejection = e;
+                    break;
+                }
+                queue = hubs.computeIfAbsent(hubId, HubQueue::new);
+            }
+            if (rejection == null) {
+                queue.actions.addLast(action);
+                pending++;
+                markReady(queue);
+            }
+        }
+        if (rejection != null) {
+            action.result.completeExceptionally(rejection);
+            return;
+        }
+        dispatchReady();
+    }
+
+    private void dispatchReady() {
+        boolean stream = properties.getTransport() == AnalyzerProperties.HubRouterTransport.STREAM;
+        List<Dispatch> dispatches = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < properties.getMaxInFlight() && !ready.isEmpty()) {
+                HubQueue queue = ready.pollFirst();
+                queue.ready = false;
+                queue.busy = true;
+                inFlight++;
+                pending--;
+                dispatches.add(new Dispatch(queue, queue.actions.pollFirst()));
+            }
+            if (!dispatches.isEmpty()) {
+                // В очередях хабов освободилось место
+                notifyAll();
+            }
+            if (stream) {
+                outbox.addAll(dispatches);
+            }
+        }
+        if (dispatches.isEmpty()) {
+            return;
+        }
+        if (stream) {
+            scheduleStreamDrain();
+        } else {
+            dispatches.forEach(dispatch -> call(dispatch.queue(), dispatch.action()));
+        }
+    }
+
+    private void call(HubQueue queue, PendingAction action) {
+        try {
+            hubRouterStub.withDeadlineAfter(properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS)
+                    .withExecutor(callbackExecutor)
+                    .handleDeviceAction(action.request, new StreamObserver<>() {
+                        @Override
+                        public void onNext(Empty value) {
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            complete(queue, action, t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            complete(queue, action, null);
+                        }
+                    });
         } catch (Exception e) {
-            log.error("Error sending command to device", e);
+            complete(queue, action, e);
         }
     }
+
+    // Запись в поток идёт в callbackExecutor, пока поток готов её принять (isReady), дальше ждём
+    // onReady. Записанное действие остаётся неподтверждённым, пока hub router не завершит поток.
+    // Следующие действия хаба можно писать в тот же открытый поток: внутри потока порядок сохраняется.
+    // Когда поток закрывается, хаб ждёт его подтверждения или сбоя и в новый поток не пишет, иначе
+    // повтор старого действия после сбоя пришёл бы позже нового. При сбое неподтверждённые и не
+    // записанные действия возвращаются в начало очередей своих хабов (UNAVAILABLE, пока есть попытки)
+    // или считаются неотправленными
+    private void scheduleStreamDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                callbackExecutor.execute(this::drainStream);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                log.warn("Device action stream drain rejected, client is shutting down");
+            }
+        }
+    }
+
+    private void drainStream() {
+        drainScheduled.set(false);
+        int written = 0;
+        synchronized (streamLock) {
+            ActionStream stream = null;
+            while (true) {
+                // Из outbox забирают только под streamLock, поэтому peek и poll видят одно действие
+                Dispatch dispatch;
+                synchronized (this) {
+                    dispatch = outbox.peekFirst();
+                }
+                if (dispatch == null) {
+                    break;
+                }
+                if (stream == null && (stream = currentStream()) == null) {
+                    break;
+                }
+                if (!stream.call.isReady()) {
+                    break;
+                }
+                HubQueue queue = dispatch.queue();
+                boolean deferred;
+                synchronized (this) {
+                    outbox.pollFirst();
+                    // Выбрано до закрытия потока, в котором у хаба есть неподтверждённые действия
+                    deferred = queue.stream != null && queue.stream != stream;
+                    if (deferred) {
+                        queue.actions.addFirst(dispatch.action());
+                        queue.busy = false;
+                        inFlight--;
+                        pending++;
+                    }
+                }
+                if (deferred) {
+                    continue;
+                }
+                try {
+                    stream.call.onNext(dispatch.action().request);
+                } catch (Exception e) {
+                    // Поток уже закрыт транспортом, действие вернётся в очередь вместе с остальными в onError
+                    log.warn("Failed to write device action to the stream", e);
+                }
+                stream.unacknowledged.add(dispatch);
+                written++;
+                synchronized (this) {
+                    unacknowledged++;
+                    queue.stream = stream;
+                    release(queue);
+                }
+                if (stream.unacknowledged.size() >= properties.getStreamBatchSize()) {
+                    closeStream(stream);
+                    stream = null;
+                }
+            }
+        }
+        // Освобождённые хабы отдают следующие действия, их запишет следующий запуск
+        if (written > 0) {
+            dispatchReady();
+        }
+    }
+
+    // Открытый поток или null, если после сбоя ещё не прошла задержка повторного открытия
+    private ActionStream currentStream() {
+        if (actionStream == null) {
+            long delay = streamRetryAt - System.nanoTime();
+            if (delay > 0) {
+                try {
+                    retryScheduler.schedule(this::scheduleStreamDrain, delay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Device action stream reopen rejected, client is shutting down");
+                }
+                return null;
+            }
+            actionStream = openStream();
+        }
+        return actionStream;
+    }
+
+    private ActionStream openStream() {
+        ActionStream stream = new ActionStream();
+        long lifetime = properties.getStreamLifetime().toMillis();
+        hubRouterStub.withDeadlineAfter(lifetime + properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS)
+                .withExecutor(callbackExecutor)
+                .streamDeviceActions(new ClientResponseObserver<DeviceActionRequest, Empty>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<DeviceActionRequest> call) {
+                        stream.call = call;
+                        call.setOnReadyHandler(HubRouterClient.this::scheduleStreamDrain);
+                    }
+
+                    @Override
+                    public void onNext(Empty value) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        streamFailed(stream, t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        streamAcknowledged(stream);
+                    }
+                });
+        try {
+            retryScheduler.schedule(() -> {
+                synchronized (streamLock) {
+                    closeStream(stream);
+                }
+                // Ждавшие готовности закрытого потока действия уйдут в новый
+                scheduleStreamDrain();
+            }, lifetime, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Device action stream rotation rejected, client is shutting down");
+        }
+        log.info("Device action stream opened");
+        return stream;
+    }
+
+    // Вызывается под streamLock: завершает запись, hub router ответит подтверждением всего потока
+    private void closeStream(ActionStream stream) {
+        if (actionStream == stream) {
+            actionStream = null;
+        }
+        if (!stream.closed) {
+            stream.closed = true;
+            stream.call.onCompleted();
+        }
+        synchronized (this) {
+            for (Dispatch dispatch : stream.unacknowledged) {
+                if (dispatch.queue().stream == stream) {
+                    dispatch.queue().awaitingAck = true;
+                }
+            }
+        }
+    }
+
+    private void streamAcknowledged(ActionStream stream) {
+        List<Dispatch> acknowledged;
+        synchronized (streamLock) {
+            if (actionStream == stream) {
+                actionStream = null;
+            }
+            stream.closed = true;
+            streamFailures = 0;
+            acknowledged = List.copyOf(stream.unacknowledged);
+            stream.unacknowledged.clear();
+            synchronized (this) {
+                acknowledged.forEach(dispatch -> unpin(dispatch.queue(), stream));
+                unacknowledged -= acknowledged.size();
+                notifyAll();
+            }
+        }
+        long now = System.nanoTime();
+        for (Dispatch dispatch : acknowledged) {
+            successTimer.record(now - dispatch.action().queuedAt, TimeUnit.NANOSECONDS);
+            dispatch.action().result.complete(null);
+        }
+        log.info("Device action stream acknowledged {} actions", acknowledged.size());
+        dispatchReady();
+    }
+
+    private void streamFailed(ActionStream stream, Throwable error) {
+        boolean retry = Status.fromThrowable(error).getCode() == Status.Code.UNAVAILABLE;
+        List<Dispatch> failed = new ArrayList<>();
+        int requeued = 0;
+        synchronized (streamLock) {
+            if (actionStream == stream) {
+                actionStream = null;
+            }
+            stream.closed = true;
+            streamFailures++;
+            long backoff = Math.min(
+                    properties.getInitialBackoff().toMillis() << Math.min(streamFailures - 1, 16),
+                    properties.getMaxBackoff().toMillis());
+            streamRetryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+
+            synchronized (this) {
+                stream.unacknowledged.forEach(dispatch -> unpin(dispatch.queue(), stream));
+                // Сначала ещё не записанные действия (они новее), затем неподтверждённые с конца:
+                // в очереди хаба восстанавливается исходный порядок
+                for (Dispatch dispatch : (Iterable<Dispatch>) outbox::descendingIterator) {
+                    dispatch.queue().actions.addFirst(dispatch.action());
+                    dispatch.queue().busy = false;
+                    inFlight--;
+                    pending++;
+                    requeued++;
+                    markReady(dispatch.queue());
+                }
+                outbox.clear();
+
+                List<Dispatch> written = stream.unacknowledged;
+                for (int i = written.size() - 1; i >= 0; i--) {
+                    Dispatch dispatch = written.get(i);
+                    PendingAction action = dispatch.action();
+                    if (retry && action.attempts < properties.getMaxRetries()) {
+                        action.attempts++;
+                        // Пока действия хаба ждали подтверждения, его очередь оставалась в hubs
+                        HubQueue queue = dispatch.queue();
+                        hubs.put(queue.hubId, queue);
+                        queue.actions.addFirst(action);
+                        pending++;
+                        requeued++;
+                        markReady(queue);
+                    } else {
+                        failed.add(dispatch);
+                    }
+                }
+                unacknowledged -= written.size();
+                written.clear();
+                notifyAll();
+            }
+            log.warn("Device action stream failed, {} actions requeued, {} dropped, reopening in {} ms",
+                    requeued, failed.size(), backoff, error);
+        }
+
+        long now = System.nanoTime();
+        for (Dispatch dispatch : failed) {
+            failureTimer.record(now - dispatch.action().queuedAt, TimeUnit.NANOSECONDS);
+            log.error("Error sending command to device for hub {}: {}", dispatch.queue().hubId,
+                    dispatch.action().request.getAction());
+            dispatch.action().result.completeExceptionally(error);
+        }
+        dispatchReady();
+    }
+
+    private void complete(HubQueue queue, PendingAction action, Throwable error) {
+        if (error != null
+                && Status.fromThrowable(error).getCode() == Status.Code.UNAVAILABLE
+                && action.attempts < properties.getMaxRetries()) {
+            long backoff = Math.min(
+                    properties.getInitialBackoff().toMillis() << action.attempts,
+                    properties.getMaxBackoff().toMillis());
+            action.attempts++;
+            log.warn("Hub router unavailable, retrying action for hub {} in {} ms (attempt {})",
+                    queue.hubId, backoff, action.attempts);
+            try {
+                // Вызов остаётся в полёте: следующие действия хаба ждут повтора, чтобы не нарушить порядок
+                retryScheduler.schedule(() -> call(queue, action), backoff, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.warn("Retry of action for hub {} rejected, client is shutting down", queue.hubId);
+            }
+        }
+
+        long latency = System.nanoTime() - action.queuedAt;
+        if (error == null) {
+            successTimer.record(latency, TimeUnit.NANOSECONDS);
+            log.info("Device action sent successfully");
+        } else {
+            failureTimer.record(latency, TimeUnit.NANOSECONDS);
+            log.error("Error sending command to device for hub {}", queue.hubId, error);
+        }
+
+        synchronized (this) {
+            release(queue);
+        }
+        if (error == null) {
+            action.result.complete(null);
+        } else {
+            action.result.completeExceptionally(error);
+        }
+        dispatchReady();
+    }
+
+    // Вызывается под this: хаб может отправлять следующее действие. Очередь хаба с неподтверждёнными
+    // действиями остаётся в hubs, чтобы его новые действия не обошли их
+    private void release(HubQueue queue) {
+        inFlight--;
+        queue.busy = false;
+        if (!queue.actions.isEmpty()) {
+            markReady(queue);
+        } else if (queue.stream == null) {
+            hubs.remove(queue.hubId);
+        }
+        notifyAll();
+    }
+
+    // Вызывается под this: поток, державший действия хаба, подтверждён или упал
+    private void unpin(HubQueue queue, ActionStream stream) {
+        if (queue.stream != stream) {
+            return;
+        }
+        queue.stream = null;
+        queue.awaitingAck = false;
+        if (queue.busy) {
+            return;
+        }
+        if (queue.actions.isEmpty()) {
+            hubs.remove(queue.hubId, queue);
+        } else {
+            markReady(queue);
+        }
+    }
+
+    private void markReady(HubQueue queue) {
+        if (!queue.busy && !queue.ready && !queue.awaitingAck) {
+            queue.ready = true;
+            ready.addLast(queue);
+        }
+    }
+
+    private static class HubQueue {
+        private final String hubId;
+        private final Deque<PendingAction> actions = new ArrayDeque<>();
+        private boolean busy;
+        private boolean ready;
+        // STREAM: поток с неподтверждёнными действиями хаба и признак того, что он уже закрывается
+        private ActionStream stream;
+        private boolean awaitingAck;
+
+        private HubQueue(String hubId) {
+            this.hubId = hubId;
+        }
+    }
+
+    private static class PendingAction {
+        private final DeviceActionRequest request;
+        private final long queuedAt;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private int attempts;
+
+        private PendingAction(DeviceActionRequest request, long queuedAt) {
+            this.request = request;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private record Dispatch(HubQueue queue, PendingAction action) {
+    }
+
+    private static class ActionStream {
+        private ClientCallStreamObserver<DeviceActionRequest> call;
+        // Записанные в поток действия ждут его завершения hub router'ом
+        private final List<Dispatch> unacknowledged = new ArrayList<>();
+        private boolean closed;
+    }
 }
@@ -1,13 +1,15 @@
 package ru.yandex.practicum.kafka;
 
 import lombok.RequiredArgsConstructor;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.config.AnalyzerProperties;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.serialization.BaseAvroDeserializer;
 
 import java.util.Properties;
 
@@ -17,17 +19,22 @@ import java.util.Properties;
 public class KafkaConfig {
 
     private final KafkaConfigProperties kafkaProperties;
+    private final AnalyzerProperties analyzerProperties;
 
     @Bean
-    public KafkaConsumer<String, SensorsSnapshotAvro> snapshotConsumer() {
+    public KafkaConsumer<String, SpecificRecordBase> snapshotConsumer() {
         Properties config = new Properties();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaProperties.getBootstrapServers());
         config.put(ConsumerConfig.GROUP_ID_CONFIG, kafkaProperties.getConsumer().getSnapshotGroupId());
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, kafkaProperties.getConsumer().getKeyDeserializer());
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, kafkaProperties.getConsumer().
-                getValueDeserializers().getSensorsSnapshot());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, kafkaProperties.getConsumer().isDeltaSnapshotsEnabled()
+                ? kafkaProperties.getConsumer().getValueDeserializers().getSensorsSnapshotDelta()
+                : kafkaProperties.getConsumer().getValueDeserializers().getSensorsSnapshot());
         config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, kafkaProperties.getConsumer().isEnableAutoCommit());
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, kafkaProperties.getConsumer().getAutoOffsetReset());
+        // При параллельном анализе снимок живёт дольше одного poll(), переиспользовать записи нельзя
+        config.put(BaseAvroDeserializer.REUSE_RECORDS_CONFIG, kafkaProperties.getConsumer().isReuseSnapshotRecords()
+                && analyzerProperties.getProcessing().getLanes() <= 1);
 
         return new KafkaConsumer<>(config);
     }
@@ -13,6 +13,7 @@ public class KafkaConfigProperties {
     @Data
     public static class Topics {
         private String sensorSnapshots;
+        private String sensorSnapshotDeltas;
         private String hubEvents;
     }
 
@@ -23,12 +24,15 @@ public class KafkaConfigProperties {
         private String autoOffsetReset;
         private boolean enableAutoCommit;
         private long consumeTimeout;
+        private boolean reuseSnapshotRecords;
+        private boolean deltaSnapshotsEnabled;
         private String keyDeserializer;
         private ValueDeserializers valueDeserializers = new ValueDeserializers();
 
         @Data
         public static class ValueDeserializers {
             private String sensorsSnapshot;
+            private String sensorsSnapshotDelta;
             private String hubEvent;
         }
     }
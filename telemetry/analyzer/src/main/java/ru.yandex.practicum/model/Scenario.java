@@ -42,6 +42,11 @@ public class Scenario {
     @Column(name = "name", nullable = false)
     String name;
 
+    // Копия условий и действий в одном столбце для чтения анализатором (ScenarioRulesCodec),
+    // нормализованные таблицы ниже остаются источником для отчётов
+    @Column(name = "rules")
+    byte[] rules;
+
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
     @MapKeyColumn(table = "scenario_conditions", name = "sensor_id")
     @JoinTable(
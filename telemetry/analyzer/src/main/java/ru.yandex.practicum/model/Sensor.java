@@ -2,6 +2,8 @@ package ru.yandex.practicum.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -9,6 +11,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -27,4 +30,9 @@ public class Sensor {
 
     @Column(name = "hub_id", nullable = false)
     String hubId;
+
+    // Тип датчика из DeviceAddedEvent, по нему условия сценариев проверяются при компиляции
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type")
+    DeviceTypeAvro type;
 }
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.processors;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Сводит события пакета к итоговому состоянию: по каждому устройству и сценарию хаба остаётся
+// последнее событие. Добавление с последующим удалением сводится к удалению: сущность могла
+// существовать до пакета. Место оставшегося события выбирается так, чтобы устройства появлялись
+// до ссылающихся на них сценариев и удалялись после них:
+// добавление устройства и удаление сценария - на месте первого события сущности,
+// удаление устройства и добавление сценария - на месте последнего.
+// События устройства не сводятся через событие сценария того же хаба: сценарий мог сослаться
+// на устройство, пока его не было (удаление, сценарий, добавление), поэтому такие события остаются на месте
+final class HubEventCompactor {
+
+    private HubEventCompactor() {
+    }
+
+    static List<ConsumerRecord<String, HubEventAvro>> compact(Iterable<ConsumerRecord<String, HubEventAvro>> records) {
+        Map<EntityKey, Entity> entities = new HashMap<>();
+        Map<String, Integer> lastScenarioEvents = new HashMap<>();
+        List<Entity> sealed = new ArrayList<>();
+        List<Positioned> result = new ArrayList<>();
+        int position = 0;
+        for (ConsumerRecord<String, HubEventAvro> record : records) {
+            EntityKey key = keyOf(record.value());
+            if (key == null) {
+                result.add(new Positioned(position++, record));
+                continue;
+            }
+            Entity entity = entities.get(key);
+            if (entity != null && !key.scenario()
+                    && lastScenarioEvents.getOrDefault(key.hubId(), -1) > entity.last) {
+                sealed.add(entity);
+                entity = null;
+            }
+            if (entity == null) {
+                entities.put(key, new Entity(position, position, record));
+            } else {
+                entity.last = position;
+                entity.record = record;
+            }
+            if (key.scenario()) {
+                lastScenarioEvents.put(key.hubId(), position);
+            }
+            position++;
+        }
+
+        sealed.addAll(entities.values());
+        sealed.forEach(entity -> result.add(new Positioned(
+                placeAtFirst(entity.record.value().getPayload()) ? entity.first : entity.last,
+                entity.record)));
+        result.sort(Comparator.comparingInt(Positioned::position));
+        return result.stream().map(Positioned::record).toList();
+    }
+
+    private static boolean placeAtFirst(Object payload) {
+        return payload instanceof DeviceAddedEventAvro || payload instanceof ScenarioRemovedEventAvro;
+    }
+
+    private static EntityKey keyOf(HubEventAvro event) {
+        Object payload = event.getPayload();
+        if (payload instanceof DeviceAddedEventAvro added) {
+            return new EntityKey(event.getHubId(), false, added.getId());
+        } else if (payload instanceof DeviceRemovedEventAvro removed) {
+            return new EntityKey(event.getHubId(), false, removed.getId());
+        } else if (payload instanceof ScenarioAddedEventAvro added) {
+            return new EntityKey(event.getHubId(), true, added.getName());
+        } else if (payload instanceof ScenarioRemovedEventAvro removed) {
+            return new EntityKey(event.getHubId(), true, removed.getName());
+        }
+        return null;
+    }
+
+    private record EntityKey(String hubId, boolean scenario, String id) {
+    }
+
+    private record Positioned(int position, ConsumerRecord<String, HubEventAvro> record) {
+    }
+
+    private static final class Entity {
+        private final int first;
+        private int last;
+        private ConsumerRecord<String, HubEventAvro> record;
+
+        private Entity(int first, int last, ConsumerRecord<String, HubEventAvro> record) {
+            this.first = first;
+            this.last = last;
+            this.record = record;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package ru.yandex.practicum.processors;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -8,6 +7,9 @@ import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.config.AnalyzerProperties;
 import ru.yandex.practicum.kafka.KafkaConfigProperties;
 import ru.yandex.practicum.services.HubEventHandler;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
@@ -17,17 +19,36 @@ import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class HubEventProcessor implements Runnable {
 
     private final KafkaConsumer<String, HubEventAvro> hubEventConsumer;
     private final KafkaConfigProperties kafkaProperties;
     private final List<HubEventHandler> hubEventHandlers;
+    private final AnalyzerProperties analyzerProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public HubEventProcessor(KafkaConsumer<String, HubEventAvro> hubEventConsumer,
+                             KafkaConfigProperties kafkaProperties,
+                             List<HubEventHandler> hubEventHandlers,
+                             AnalyzerProperties analyzerProperties,
+                             PlatformTransactionManager transactionManager) {
+        this.hubEventConsumer = hubEventConsumer;
+        this.kafkaProperties = kafkaProperties;
+        this.hubEventHandlers = hubEventHandlers;
+        this.analyzerProperties = analyzerProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Прерывает poll(): цикл фиксирует смещения обработанных событий и закрывает consumer
+    public void shutdown() {
+        hubEventConsumer.wakeup();
+    }
 
     @Override
     public void run() {
@@ -36,21 +57,33 @@ public class HubEventProcessor implements Runnable {
         try {
             hubEventConsumer.subscribe(Collections.singletonList(kafkaProperties.getTopics().getHubEvents()));
 
+            // Пакет обработан, но commitSync ещё не завершился (например, прерван wakeup())
+            boolean uncommitted = false;
             while (true) {
                 try {
                     ConsumerRecords<String, HubEventAvro> records =
                             hubEventConsumer.poll(Duration.ofMillis(kafkaProperties.getConsumer().getConsumeTimeout()));
 
-                    for (ConsumerRecord<String, HubEventAvro> record : records) {
-                        log.info("Received hub event: {}", record.key());
-                        processHubEvent(record.value());
-                    }
-
                     if (!records.isEmpty()) {
+                        List<ConsumerRecord<String, HubEventAvro>> events = compact(records);
+                        if (analyzerProperties.getHubEvents().isBatchTransaction()) {
+                            processBatch(events);
+                        } else {
+                            for (ConsumerRecord<String, HubEventAvro> record : events) {
+                                log.info("Received hub event: {}", record.key());
+                                processHubEvent(record.value());
+                            }
+                        }
+
+                        uncommitted = true;
                         hubEventConsumer.commitSync();
+                        uncommitted = false;
                     }
                 } catch (WakeupException e) {
                     log.info("Hub event processor received wakeup signal, shutting down...");
+                    if (uncommitted) {
+                        hubEventConsumer.commitSync();
+                    }
                     break;
                 } catch (Exception e) {
                     log.error("Error processing hub event", e);
@@ -68,6 +101,42 @@ public class HubEventProcessor implements Runnable {
         }
     }
 
+    private List<ConsumerRecord<String, HubEventAvro>> compact(ConsumerRecords<String, HubEventAvro> records) {
+        List<ConsumerRecord<String, HubEventAvro>> events = new ArrayList<>(records.count());
+        records.forEach(events::add);
+        if (!analyzerProperties.getHubEvents().isCompaction()) {
+            return events;
+        }
+        List<ConsumerRecord<String, HubEventAvro>> compacted = HubEventCompactor.compact(events);
+        if (compacted.size() < events.size()) {
+            log.info("Compacted {} hub events to {}", events.size(), compacted.size());
+        }
+        return compacted;
+    }
+
+    // Все события пакета применяются в одной транзакции, обработчики присоединяются к ней.
+    // Если пакет откатился, события применяются по одному, чтобы ошибочное не блокировало остальные
+    private void processBatch(List<ConsumerRecord<String, HubEventAvro>> records) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (ConsumerRecord<String, HubEventAvro> record : records) {
+                    processHubEvent(record.value());
+                }
+            });
+            log.info("Applied {} hub events in one transaction", records.size());
+        } catch (Exception e) {
+            log.warn("Hub event batch of {} records rolled back, applying events one by one", records.size(), e);
+            for (ConsumerRecord<String, HubEventAvro> record : records) {
+                try {
+                    processHubEvent(record.value());
+                } catch (Exception eventError) {
+                    log.error("Skipping hub event {} at {}-{} offset {}", record.key(), record.topic(),
+                            record.partition(), record.offset(), eventError);
+                }
+            }
+        }
+    }
+
     private void processHubEvent(HubEventAvro hubEvent) {
         log.info("Processing hub event with payload type: {}",
                 hubEvent.getPayload().getClass().getSimpleName());
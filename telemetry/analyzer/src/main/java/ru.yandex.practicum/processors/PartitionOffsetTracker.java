@@ -0,0 +1,63 @@
+package ru.yandex.practicum.processors;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Записи партиции, обрабатываемые параллельно, завершаются в произвольном порядке. Фиксировать можно
+// только смещение, до которого обработаны все записи партиции. Используется из потока poll()
+class PartitionOffsetTracker {
+
+    private final Map<TopicPartition, Deque<TrackedRecord>> partitions = new HashMap<>();
+    // Смещения, снятые с очередей, но ещё не зафиксированные: commitSync мог прерваться wakeup()
+    private final Map<TopicPartition, OffsetAndMetadata> uncommitted = new HashMap<>();
+
+    TrackedRecord track(TopicPartition partition, long offset) {
+        TrackedRecord record = new TrackedRecord(offset);
+        partitions.computeIfAbsent(partition, p -> new ArrayDeque<>()).addLast(record);
+        return record;
+    }
+
+    // Снимает обработанные записи с начала очередей и возвращает смещения для фиксации
+    Map<TopicPartition, OffsetAndMetadata> completedOffsets() {
+        partitions.forEach((partition, records) -> {
+            TrackedRecord last = null;
+            while (!records.isEmpty() && records.peekFirst().done) {
+                last = records.pollFirst();
+            }
+            if (last != null) {
+                uncommitted.put(partition, new OffsetAndMetadata(last.offset + 1));
+            }
+        });
+        return new HashMap<>(uncommitted);
+    }
+
+    void committed() {
+        uncommitted.clear();
+    }
+
+    void forget(Collection<TopicPartition> revoked) {
+        revoked.forEach(partition -> {
+            partitions.remove(partition);
+            uncommitted.remove(partition);
+        });
+    }
+
+    static final class TrackedRecord {
+        private final long offset;
+        private volatile boolean done;
+
+        private TrackedRecord(long offset) {
+            this.offset = offset;
+        }
+
+        void complete() {
+            done = true;
+        }
+    }
+}
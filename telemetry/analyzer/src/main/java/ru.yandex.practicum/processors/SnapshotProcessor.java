@@ -2,46 +2,84 @@ package ru.yandex.practicum.processors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.config.ProcessingThreads;
 import ru.yandex.practicum.kafka.KafkaConfigProperties;
 import ru.yandex.practicum.services.ScenarioAnalysisService;
+import ru.yandex.practicum.services.SnapshotDeltaReader;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+// Снимки разных хабов анализируются параллельно в lanes потоках, снимки одного хаба попадают
+// в один поток по хешу hubId и обрабатываются по порядку. Дельты применяются в потоке poll(),
+// смещения фиксируются только до последней записи, перед которой обработаны все записи партиции
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class SnapshotProcessor implements Runnable {
 
-    private final KafkaConsumer<String, SensorsSnapshotAvro> snapshotConsumer;
+    private final KafkaConsumer<String, SpecificRecordBase> snapshotConsumer;
     private final KafkaConfigProperties kafkaProperties;
+    private final AnalyzerProperties analyzerProperties;
     private final ScenarioAnalysisService scenarioAnalysisService;
+    private final SnapshotDeltaReader snapshotDeltaReader;
+    private final ProcessingThreads processingThreads;
+
+    private final PartitionOffsetTracker offsetTracker = new PartitionOffsetTracker();
+    private ExecutorService[] lanes;
+    private Semaphore inFlight;
 
     @Override
     public void run() {
         log.info("Starting snapshot processor...");
+        startLanes();
         try {
-            snapshotConsumer.subscribe(Collections.singletonList(kafkaProperties.getTopics().getSensorSnapshots()));
+            String topic = kafkaProperties.getConsumer().isDeltaSnapshotsEnabled()
+                    ? kafkaProperties.getTopics().getSensorSnapshotDeltas()
+                    : kafkaProperties.getTopics().getSensorSnapshots();
+            snapshotConsumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    awaitInFlight();
+                    commitCompleted();
+                    offsetTracker.forget(partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                }
+            });
 
             while (true) {
                 try {
-                    ConsumerRecords<String, SensorsSnapshotAvro> records =
+                    ConsumerRecords<String, SpecificRecordBase> records =
                             snapshotConsumer.poll(Duration.ofMillis(kafkaProperties.getConsumer().getConsumeTimeout()));
 
-                    for (ConsumerRecord<String, SensorsSnapshotAvro> record : records) {
+                    for (ConsumerRecord<String, SpecificRecordBase> record : records) {
                         log.info("Received snapshot for hub: {}", record.key());
-                        processSnapshot(record.value());
+                        submit(record);
                     }
 
-                    if (!records.isEmpty()) {
-                        snapshotConsumer.commitSync();
-                    }
+                    commitCompleted();
                 } catch (WakeupException e) {
                     log.info("Snapshot processor received wakeup signal, shutting down...");
                     break;
@@ -49,9 +87,13 @@ public class SnapshotProcessor implements Runnable {
                     log.error("Error processing snapshot", e);
                 }
             }
+
+            awaitInFlight();
+            commitCompleted();
         } catch (Exception e) {
             log.error("Error in snapshot processor", e);
         } finally {
+            stopLanes();
             try {
                 snapshotConsumer.close();
                 log.info("Snapshot consumer closed successfully");
@@ -61,6 +103,92 @@ public class SnapshotProcessor implements Runnable {
         }
     }
 
+    // Прерывает poll(): цикл дожидается анализа принятых снимков, фиксирует смещения и закрывает consumer
+    public void shutdown() {
+        snapshotConsumer.wakeup();
+    }
+
+    private void startLanes() {
+        AnalyzerProperties.Processing processing = analyzerProperties.getProcessing();
+        if (processing.getLanes() <= 1) {
+            return;
+        }
+        lanes = new ExecutorService[processing.getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(processingThreads.namedThread("snapshot-lane-" + i));
+        }
+        inFlight = new Semaphore(processing.getMaxInFlight());
+        log.info("Snapshot analysis runs in {} lanes", lanes.length);
+    }
+
+    private void stopLanes() {
+        if (lanes == null) {
+            return;
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private void submit(ConsumerRecord<String, SpecificRecordBase> record) throws InterruptedException {
+        PartitionOffsetTracker.TrackedRecord tracked =
+                offsetTracker.track(new TopicPartition(record.topic(), record.partition()), record.offset());
+        Optional<SensorsSnapshotAvro> snapshot = toSnapshot(record.value());
+        if (snapshot.isEmpty()) {
+            tracked.complete();
+            return;
+        }
+        if (lanes == null) {
+            processSnapshot(snapshot.get());
+            tracked.complete();
+            return;
+        }
+
+        inFlight.acquire();
+        ExecutorService lane = lanes[Math.floorMod(snapshot.get().getHubId().hashCode(), lanes.length)];
+        lane.execute(() -> {
+            try {
+                processSnapshot(snapshot.get());
+            } finally {
+                tracked.complete();
+                inFlight.release();
+            }
+        });
+    }
+
+    // Ждёт, пока будут проанализированы все принятые снимки
+    private void awaitInFlight() {
+        if (lanes == null) {
+            return;
+        }
+        AnalyzerProperties.Processing processing = analyzerProperties.getProcessing();
+        int permits = processing.getMaxInFlight();
+        try {
+            if (inFlight.tryAcquire(permits, processing.getDrainTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                inFlight.release(permits);
+            } else {
+                log.warn("Timed out waiting for in-flight snapshots, committing processed offsets only");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commitCompleted() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = offsetTracker.completedOffsets();
+        if (!offsets.isEmpty()) {
+            snapshotConsumer.commitSync(offsets);
+            offsetTracker.committed();
+        }
+    }
+
+    private Optional<SensorsSnapshotAvro> toSnapshot(SpecificRecordBase value) {
+        if (value instanceof SensorsSnapshotDeltaAvro delta) {
+            return snapshotDeltaReader.apply(delta);
+        }
+        return Optional.of((SensorsSnapshotAvro) value);
+    }
+
     private void processSnapshot(SensorsSnapshotAvro snapshot) {
         log.info("Processing snapshot for hub: {}", snapshot.getHubId());
 
@@ -1,6 +1,8 @@
 package ru.yandex.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.model.Scenario;
 
@@ -14,4 +16,8 @@ public interface ScenarioRepository extends JpaRepository<Scenario, Long> {
 
     Optional<Scenario> findByHubIdAndName(String hubId, String name);
 
+    // Одна выборка по индексу (hub_id, name) без обращения к таблицам условий и действий
+    @Query("SELECT s.id AS id, s.hubId AS hubId, s.name AS name, s.rules AS rules FROM Scenario s WHERE s.hubId = :hubId")
+    List<ScenarioRulesView> findRulesByHubId(@Param("hubId") String hubId);
+
 }
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.repository;
+
+// Сценарий без связанных таблиц: только закодированные условия и действия
+public interface ScenarioRulesView {
+
+    Long getId();
+
+    String getHubId();
+
+    String getName();
+
+    byte[] getRules();
+}
@@ -18,6 +18,8 @@ public interface SensorRepository extends JpaRepository<Sensor, String> {
 
     Optional<Sensor> findById(String id);
 
+    List<Sensor> findByHubId(String hubId);
+
     @Query("SELECT s FROM Sensor s WHERE s.id IN :sensorIds AND s.hubId = :hubId")
     List<Sensor> findByIdInAndHubId(@Param("sensorIds") List<String> sensorIds, @Param("hubId") String hubId);
 
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.services;
+
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+// Условие сценария, скомпилированное в проверку одного поля показаний конкретного типа датчика.
+// field == null - условие отклонено при компиляции и никогда не выполняется
+public record CompiledCondition(String sensorId,
+                                ConditionTypeAvro type,
+                                ConditionOperationAvro operation,
+                                int value,
+                                SensorField field) {
+
+    public boolean test(SensorsSnapshotAvro snapshot) {
+        if (field == null) {
+            return false;
+        }
+        SensorStateAvro state = snapshot.getSensorsState().get(sensorId);
+        // Показания другого типа, чем сохранённый тип датчика, возможны только при ошибке хаба
+        if (state == null || !field.accepts(state.getData())) {
+            return false;
+        }
+        int reading = field.read(state.getData());
+        return switch (operation) {
+            case EQUALS -> reading == value;
+            case GREATER_THAN -> reading > value;
+            case LOWER_THAN -> reading < value;
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.model.Condition;
+
+// Превращает условие в проверку поля показаний датчика известного типа. Условие, которое датчик
+// такого типа не измеряет, отклоняется здесь же. Для датчиков без сохранённого типа поле выбирается
+// по типу условия, а показания другого типа дают false при проверке
+@Slf4j
+@Component
+public class ConditionCompiler {
+
+    public CompiledCondition compile(String sensorId, Condition condition, DeviceTypeAvro deviceType) {
+        if (condition.getType() == null || condition.getOperation() == null || condition.getValue() == null) {
+            log.warn("Condition for sensor {} is incomplete and will never be met: {}", sensorId, condition);
+            return new CompiledCondition(sensorId, condition.getType(), condition.getOperation(), 0, null);
+        }
+
+        SensorField field = SensorField.of(condition.getType(), deviceType);
+        if (field == null) {
+            log.warn("Condition {} cannot be met by {} {} and is rejected", condition.getType(), deviceType,
+                    sensorId);
+        }
+        return new CompiledCondition(sensorId, condition.getType(), condition.getOperation(), condition.getValue(),
+                field);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.grpc.HubRouterClient;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.model.Action;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Объединяет действия сценариев, сработавших на одном снимке: на каждое устройство уходит одна
+// команда по правилу старшинства, а команда, совпадающая с последней отправленной устройству
+// в пределах commandTtl, не отправляется. Команда, которую hub router так и не принял, забывается
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceActionCoalescer {
+
+    // Выключение важнее включения, явные команды важнее INVERSE, при равенстве - сценарий с меньшим именем
+    private static final Comparator<PlannedAction> PRECEDENCE = Comparator
+            .comparingInt((PlannedAction planned) -> rank(planned.action().getType()))
+            .thenComparing(PlannedAction::scenarioName);
+
+    private final HubRouterClient hubRouterClient;
+    private final AnalyzerProperties analyzerProperties;
+
+    // Последняя отправленная команда по устройствам хаба. Обновляется и из потоков ответов hub router'а
+    private final Map<String, Map<String, Command>> lastCommands = new ConcurrentHashMap<>();
+
+    public void dispatch(String hubId, List<PlannedAction> actions) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        if (!analyzerProperties.getCoalescing().isEnabled()) {
+            actions.forEach(planned -> send(hubId, planned));
+            return;
+        }
+
+        Map<String, PlannedAction> winners = new LinkedHashMap<>();
+        for (PlannedAction planned : actions) {
+            winners.merge(planned.sensorId(), planned,
+                    (current, candidate) -> PRECEDENCE.compare(candidate, current) < 0 ? candidate : current);
+        }
+
+        Map<String, Command> commands = lastCommands.computeIfAbsent(hubId, id -> new ConcurrentHashMap<>());
+        long now = System.currentTimeMillis();
+        long ttl = analyzerProperties.getCoalescing().getCommandTtl().toMillis();
+        for (PlannedAction planned : winners.values()) {
+            Action action = planned.action();
+            Command last = commands.get(planned.sensorId());
+            if (last != null && last.matches(action) && now - last.sentAt() < ttl) {
+                log.info("Skipping action for hub {}: device {} already received {}", hubId, planned.sensorId(),
+                        action.getType());
+                continue;
+            }
+            if (action.getType() == ActionTypeAvro.INVERSE) {
+                // После INVERSE состояние устройства неизвестно
+                commands.remove(planned.sensorId());
+                send(hubId, planned);
+                continue;
+            }
+            // Команда запоминается сразу, чтобы не повторять её, пока она в очереди клиента. Если клиент
+            // её отклонил или исчерпал попытки, запись снимается, и следующий снимок отправит её снова
+            Command command = new Command(action.getType(), action.getValue(), now);
+            commands.put(planned.sensorId(), command);
+            send(hubId, planned).whenComplete((ignored, error) -> {
+                if (error != null && commands.remove(planned.sensorId(), command)) {
+                    log.info("Forgetting undelivered {} for device {} of hub {}", action.getType(),
+                            planned.sensorId(), hubId);
+                }
+            });
+        }
+    }
+
+    private CompletableFuture<Void> send(String hubId, PlannedAction planned) {
+        return hubRouterClient.sendDeviceAction(hubId, planned.scenarioName(), planned.sensorId(),
+                planned.action());
+    }
+
+    private static int rank(ActionTypeAvro type) {
+        return switch (type) {
+            case DEACTIVATE -> 0;
+            case ACTIVATE -> 1;
+            case SET_VALUE -> 2;
+            case INVERSE -> 3;
+        };
+    }
+
+    private record Command(ActionTypeAvro type, Integer value, long sentAt) {
+        private boolean matches(Action action) {
+            return type == action.getType()
+                    && (type != ActionTypeAvro.SET_VALUE || Objects.equals(value, action.getValue()));
+        }
+    }
+}
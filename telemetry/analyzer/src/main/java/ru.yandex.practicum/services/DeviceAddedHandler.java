@@ -2,6 +2,7 @@ package ru.yandex.practicum.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.model.Sensor;
@@ -9,7 +10,7 @@ import ru.yandex.practicum.repository.SensorRepository;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 
-import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -18,6 +19,7 @@ import java.util.List;
 public class DeviceAddedHandler implements HubEventHandler {
 
     private final SensorRepository sensorRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -25,12 +27,21 @@ public class DeviceAddedHandler implements HubEventHandler {
 
         DeviceAddedEventAvro deviceAddedEventAvro = (DeviceAddedEventAvro) hubEventAvro.getPayload();
 
-        if (sensorRepository.existsByIdInAndHubId(List.of(deviceAddedEventAvro.getId()), hubEventAvro.getHubId())) {
+        Optional<Sensor> existing = sensorRepository.findById(deviceAddedEventAvro.getId())
+                .filter(sensor -> sensor.getHubId().equals(hubEventAvro.getHubId()));
+        if (existing.isPresent()) {
             log.info("Device with id: {} already added to hub with id: {}", deviceAddedEventAvro.getId(), hubEventAvro.getHubId());
+            // Датчик добавлен до появления sensors.type: условия на нём перекомпилируются с известным типом
+            Sensor sensor = existing.get();
+            if (sensor.getType() == null) {
+                sensor.setType(deviceAddedEventAvro.getType());
+                eventPublisher.publishEvent(new ScenarioRulesChangedEvent(hubEventAvro.getHubId()));
+            }
         } else {
             Sensor sensor = Sensor.builder()
                     .id(deviceAddedEventAvro.getId())
                     .hubId(hubEventAvro.getHubId())
+                    .type(deviceAddedEventAvro.getType())
                     .build();
             sensorRepository.save(sensor);
         }
@@ -2,6 +2,7 @@ package ru.yandex.practicum.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.repository.SensorRepository;
@@ -15,12 +16,14 @@ import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 public class DeviceRemovedHandler implements HubEventHandler {
 
     private final SensorRepository sensorRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
     public void handle(HubEventAvro event) {
         DeviceRemovedEventAvro payload = (DeviceRemovedEventAvro) event.getPayload();
         sensorRepository.deleteByIdAndHubId(payload.getId(), event.getHubId());
+        eventPublisher.publishEvent(new ScenarioRulesChangedEvent(event.getHubId()));
         log.info("Removed device with id: {} for hub with id: {}", payload.getId(), event.getHubId());
     }
 
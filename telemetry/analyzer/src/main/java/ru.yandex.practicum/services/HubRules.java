@@ -0,0 +1,30 @@
+package ru.yandex.practicum.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Сценарии хаба и индекс: датчик -> номера сценариев, условия которых на него ссылаются
+public record HubRules(List<ScenarioRule> scenarios, Map<String, int[]> scenariosBySensor) {
+
+    private static final int[] NO_SCENARIOS = new int[0];
+
+    public static HubRules of(List<ScenarioRule> scenarios) {
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (int i = 0; i < scenarios.size(); i++) {
+            for (CompiledCondition condition : scenarios.get(i).conditions()) {
+                index.computeIfAbsent(condition.sensorId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, int[]> scenariosBySensor = new HashMap<>();
+        index.forEach((sensorId, numbers) ->
+                scenariosBySensor.put(sensorId, numbers.stream().mapToInt(Integer::intValue).toArray()));
+        return new HubRules(List.copyOf(scenarios), Map.copyOf(scenariosBySensor));
+    }
+
+    public int[] scenariosOf(String sensorId) {
+        return scenariosBySensor.getOrDefault(sensorId, NO_SCENARIOS);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.services;
+
+import ru.yandex.practicum.model.Action;
+
+// Действие сработавшего сценария, ещё не отправленное в hub router
+public record PlannedAction(String scenarioName, String sensorId, Action action) {
+}
@@ -2,14 +2,13 @@ package ru.yandex.practicum.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.model.Action;
 import ru.yandex.practicum.model.Condition;
 import ru.yandex.practicum.model.Scenario;
 import ru.yandex.practicum.model.Sensor;
-import ru.yandex.practicum.repository.ActionRepository;
-import ru.yandex.practicum.repository.ConditionRepository;
 import ru.yandex.practicum.repository.ScenarioRepository;
 import ru.yandex.practicum.repository.SensorRepository;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
@@ -29,8 +28,8 @@ public class ScenarioAddedHandler implements HubEventHandler {
 
     private final ScenarioRepository scenarioRepository;
     private final SensorRepository sensorRepository;
-    private final ActionRepository actionRepository;
-    private final ConditionRepository conditionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScenarioRulesCodec rulesCodec;
 
     @Override
     @Transactional
@@ -38,8 +37,9 @@ public class ScenarioAddedHandler implements HubEventHandler {
 
         ScenarioAddedEventAvro scenarioAddedEvent = (ScenarioAddedEventAvro) hubEventAvro.getPayload();
         Scenario scenario = findOrCreateScenario(hubEventAvro, scenarioAddedEvent);
-        processActionsAndConditions(hubEventAvro, scenarioAddedEvent, scenario);
-
+        if (processActionsAndConditions(hubEventAvro, scenarioAddedEvent, scenario)) {
+            eventPublisher.publishEvent(new ScenarioRulesChangedEvent(hubEventAvro.getHubId()));
+        }
     }
 
     public Scenario findOrCreateScenario(HubEventAvro hubEvent, ScenarioAddedEventAvro scenarioAddedEvent) {
@@ -55,8 +55,9 @@ public class ScenarioAddedHandler implements HubEventHandler {
         return scenarioRepository.save(newScenario);
     }
 
-    private void processActionsAndConditions(HubEventAvro hubEvent, ScenarioAddedEventAvro scenarioAddedEvent,
-                                             Scenario scenario) {
+    // Возвращает false, если сохранённый сценарий уже совпадает с пришедшим
+    private boolean processActionsAndConditions(HubEventAvro hubEvent, ScenarioAddedEventAvro scenarioAddedEvent,
+                                                Scenario scenario) {
         Set<String> allSensorIds = new HashSet<>();
         allSensorIds.addAll(scenarioAddedEvent.getActions().stream()
                 .map(DeviceActionAvro::getSensorId)
@@ -65,45 +66,82 @@ public class ScenarioAddedHandler implements HubEventHandler {
                 .map(ScenarioConditionAvro::getSensorId)
                 .collect(Collectors.toSet()));
 
+        // Один запрос проверяет принадлежность всех датчиков хабу сценария (раньше это делал триггер на каждую строку)
         List<Sensor> sensors = sensorRepository.findByIdInAndHubId(new ArrayList<>(allSensorIds), hubEvent.getHubId());
         Map<String, Sensor> sensorMap = sensors.stream()
                 .collect(Collectors.toMap(Sensor::getId, Function.identity()));
 
-        scenario.getConditions().clear();
-        scenario.getActions().clear();
-
+        Map<String, Action> actions = new HashMap<>();
         for (DeviceActionAvro actionAvro : scenarioAddedEvent.getActions()) {
             Sensor sensor = sensorMap.get(actionAvro.getSensorId());
             if (sensor != null) {
-                Action action = Action.builder()
+                actions.put(sensor.getId(), Action.builder()
                         .type(actionAvro.getType())
                         .value(actionAvro.getValue())
-                        .build();
-                action = actionRepository.save(action);
-                scenario.getActions().put(sensor.getId(), action);
+                        .build());
             } else {
                 log.warn("Sensor {} not found for action in scenario {}", actionAvro.getSensorId(), scenario.getName());
             }
         }
 
+        Map<String, Condition> conditions = new HashMap<>();
         for (ScenarioConditionAvro conditionAvro : scenarioAddedEvent.getConditions()) {
             Sensor sensor = sensorMap.get(conditionAvro.getSensorId());
             if (sensor != null) {
-                Integer conditionValue = extractConditionValue(conditionAvro.getValue());
-                Condition condition = Condition.builder()
+                conditions.put(sensor.getId(), Condition.builder()
                         .type(conditionAvro.getType())
                         .operation(conditionAvro.getOperation())
-                        .value(conditionValue)
-                        .build();
-                condition = conditionRepository.save(condition);
-                scenario.getConditions().put(sensor.getId(), condition);
+                        .value(extractConditionValue(conditionAvro.getValue()))
+                        .build());
             } else {
                 log.warn("Sensor {} not found for condition in scenario {}", conditionAvro.getSensorId(),
                         scenario.getName());
             }
         }
 
+        // Закодированные правила однозначно описывают сценарий и служат его хешем содержимого
+        byte[] rules = rulesCodec.encode(conditions, actions);
+        if (Arrays.equals(rules, scenario.getRules())) {
+            log.info("Scenario {} of hub {} is unchanged", scenario.getName(), scenario.getHubId());
+            return false;
+        }
+
+        mergeConditions(scenario.getConditions(), conditions);
+        mergeActions(scenario.getActions(), actions);
+        scenario.setRules(rules);
+
+        // Новые условия и действия сохраняются каскадом при сбросе сессии: идентификаторы берутся из
+        // последовательностей блоками, поэтому вставки строк и связей уходят пакетами JDBC.
+        // Изменённые строки обновляются, исчезнувшие удаляются как сироты
         scenarioRepository.save(scenario);
+        return true;
+    }
+
+    private void mergeConditions(Map<String, Condition> stored, Map<String, Condition> incoming) {
+        stored.keySet().retainAll(incoming.keySet());
+        incoming.forEach((sensorId, condition) -> {
+            Condition current = stored.get(sensorId);
+            if (current == null) {
+                stored.put(sensorId, condition);
+            } else {
+                current.setType(condition.getType());
+                current.setOperation(condition.getOperation());
+                current.setValue(condition.getValue());
+            }
+        });
+    }
+
+    private void mergeActions(Map<String, Action> stored, Map<String, Action> incoming) {
+        stored.keySet().retainAll(incoming.keySet());
+        incoming.forEach((sensorId, action) -> {
+            Action current = stored.get(sensorId);
+            if (current == null) {
+                stored.put(sensorId, action);
+            } else {
+                current.setType(action.getType());
+                current.setValue(action.getValue());
+            }
+        });
     }
 
     @Override
@@ -3,142 +3,127 @@ package ru.yandex.practicum.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import ru.yandex.practicum.grpc.HubRouterClient;
-import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
-import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
-import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.config.AnalyzerProperties;
 import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
 import ru.yandex.practicum.model.Action;
-import ru.yandex.practicum.model.Condition;
-import ru.yandex.practicum.model.Scenario;
-import ru.yandex.practicum.repository.ScenarioRepository;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ScenarioAnalysisService {
 
-    private final ScenarioRepository scenarioRepository;
-    private final HubRouterClient hubRouterClient;
+    private final ScenarioRuleCache scenarioRuleCache;
+    private final DeviceActionCoalescer actionCoalescer;
+    private final AnalyzerProperties analyzerProperties;
+    private final ScenarioFiringPolicy firingPolicy;
+
+    // Время последних показаний датчиков хаба из предыдущего снимка
+    private final Map<String, HubSensorTimestamps> sensorTimestamps = new ConcurrentHashMap<>();
 
-    @Transactional(readOnly = true)
     public void analyzeSnapshot(SensorsSnapshotAvro snapshot) {
         String hubId = snapshot.getHubId();
         log.info("Analyzing scenarios for hub: {}", hubId);
 
         // Получаю все сценарии для хаба
-        List<Scenario> scenarios = scenarioRepository.findByHubId(hubId);
+        HubRules rules = scenarioRuleCache.getRules(hubId);
 
-        if (scenarios.isEmpty()) {
+        if (rules.scenarios().isEmpty()) {
             log.info("No scenarios found for hub: {}", hubId);
             return;
         }
 
-        for (Scenario scenario : scenarios) {
-            analyzeScenario(scenario, snapshot);
+        List<PlannedAction> actions = new ArrayList<>();
+        if (!analyzerProperties.getEvaluation().isIncremental()) {
+            for (int i = 0; i < rules.scenarios().size(); i++) {
+                analyzeScenario(rules, i, snapshot, actions);
+            }
+        } else {
+            BitSet affected = affectedScenarios(rules, snapshot);
+            for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+                analyzeScenario(rules, i, snapshot, actions);
+            }
         }
+        actionCoalescer.dispatch(hubId, actions);
     }
 
-    private void analyzeScenario(Scenario scenario, SensorsSnapshotAvro snapshot) {
-        log.info("Analyzing scenario: {} for hub: {}", scenario.getName(), scenario.getHubId());
-
-        log.info("Scenario conditions: {}", scenario.getConditions().size());
-        log.info("Scenario actions: {}", scenario.getActions().size());
+    // Сценарии, условия которых ссылаются на датчики, чьи показания новее, чем в предыдущем снимке.
+    // Первый снимок хаба и первый снимок после перезагрузки его сценариев проверяются целиком
+    private BitSet affectedScenarios(HubRules rules, SensorsSnapshotAvro snapshot) {
+        HubSensorTimestamps previous = sensorTimestamps.get(snapshot.getHubId());
+        boolean full = previous == null || previous.rules() != rules;
+        HubSensorTimestamps current = full ? new HubSensorTimestamps(rules, new HashMap<>()) : previous;
+        sensorTimestamps.put(snapshot.getHubId(), current);
+
+        BitSet affected = new BitSet(rules.scenarios().size());
+        if (full) {
+            affected.set(0, rules.scenarios().size());
+        }
+        for (Map.Entry<String, SensorStateAvro> entry : snapshot.getSensorsState().entrySet()) {
+            long timestamp = entry.getValue().getTimestamp().toEpochMilli();
+            Long last = current.timestamps().put(entry.getKey(), timestamp);
+            if (!full && (last == null || last < timestamp)) {
+                for (int scenario : rules.scenariosOf(entry.getKey())) {
+                    affected.set(scenario);
+                }
+            }
+        }
+        return affected;
+    }
 
-        boolean allConditionsMet = checkAllConditions(scenario.getConditions(), snapshot);
-        if (allConditionsMet) {
-            log.info("All conditions met for scenario: {}, executing actions", scenario.getName());
-            executeActions(scenario.getActions(), scenario.getName(), scenario.getHubId());
+    private void analyzeScenario(HubRules rules, int index, SensorsSnapshotAvro snapshot,
+                                 List<PlannedAction> actions) {
+        ScenarioRule scenario = rules.scenarios().get(index);
+        log.info("Analyzing scenario: {} for hub: {}", scenario.name(), scenario.hubId());
+
+        log.info("Scenario conditions: {}", scenario.conditions().size());
+        log.info("Scenario actions: {}", scenario.actions().size());
+
+        boolean allConditionsMet = checkAllConditions(scenario.conditions(), snapshot);
+        boolean fire = firingPolicy.shouldFire(scenario.hubId(), rules, index, allConditionsMet,
+                snapshot.getTimestamp().toEpochMilli());
+        if (fire) {
+            log.info("All conditions met for scenario: {}, executing actions", scenario.name());
+            executeActions(scenario.actions(), scenario.name(), actions);
+        } else if (allConditionsMet) {
+            log.info("Conditions still met for scenario: {}, actions already executed", scenario.name());
         } else {
-            log.info("Conditions not met for scenario: {}", scenario.getName());
+            log.info("Conditions not met for scenario: {}", scenario.name());
         }
     }
 
-    private boolean checkAllConditions(Map<String, Condition> conditions, SensorsSnapshotAvro snapshot) {
+    private boolean checkAllConditions(List<CompiledCondition> conditions, SensorsSnapshotAvro snapshot) {
         if (conditions.isEmpty()) {
             return false;
         }
-        for (Map.Entry<String, Condition> entry : conditions.entrySet()) {
-            String sensorId = entry.getKey();
-            Condition condition = entry.getValue();
-            if (!checkCondition(sensorId, condition, snapshot)) {
+        for (CompiledCondition condition : conditions) {
+            if (!condition.test(snapshot)) {
+                log.debug("Condition not met: sensor {} {} {} {}", condition.sensorId(), condition.type(),
+                        condition.operation(), condition.value());
                 return false;
             }
         }
         return true;
     }
 
-    private boolean checkCondition(String sensorId, Condition condition, SensorsSnapshotAvro snapshot) {
-        Integer sensorValue = extractSensorValue(sensorId, snapshot);
-
-        if (sensorValue == null) {
-            log.warn("Sensor {} not found in snapshot or unknown sensor type", sensorId);
-            return false;
-        }
-
-        boolean result = switch (condition.getOperation()) {
-            case EQUALS -> sensorValue.equals(condition.getValue());
-            case GREATER_THAN -> sensorValue > condition.getValue();
-            case LOWER_THAN -> sensorValue < condition.getValue();
-        };
-
-        log.info("Condition check: sensor {} {} {} = {} (actual: {}, expected: {})",
-                sensorId, condition.getOperation(), condition.getValue(), result, sensorValue, condition.getValue());
-        return result;
-    }
-
-    private Integer extractSensorValue(String sensorId, SensorsSnapshotAvro snapshot) {
-        Map<String, SensorStateAvro> sensorsState = snapshot.getSensorsState();
-        SensorStateAvro sensorState = sensorsState.get(sensorId);
-
-        if (sensorState == null) {
-            log.warn("Sensor {} not found in snapshot", sensorId);
-            return null;
-        }
-
-        Object data = sensorState.getData();
-        if (data == null) {
-            log.warn("Sensor {} has null data", sensorId);
-            return null;
-        }
-
-        if (data instanceof ClimateSensorAvro climateSensor) {
-            Integer value = climateSensor.getTemperatureC();
-            log.info("Extracted temperature value: {} from ClimateSensor for sensor {}", value, sensorId);
-            return value;
-        } else if (data instanceof LightSensorAvro lightSensor) {
-            Integer value = lightSensor.getLuminosity();
-            log.info("Extracted luminosity value: {} from LightSensor for sensor {}", value, sensorId);
-            return value;
-        } else if (data instanceof MotionSensorAvro motionSensor) {
-            Integer value = motionSensor.getMotion() ? 1 : 0;
-            log.info("Extracted motion value: {} from MotionSensor for sensor {}", value, sensorId);
-            return value;
-        } else if (data instanceof SwitchSensorAvro switchSensor) {
-            Integer value = switchSensor.getState() ? 1 : 0;
-            log.info("Extracted switch value: {} from SwitchSensor for sensor {}", value, sensorId);
-            return value;
-        } else {
-            log.warn("Unknown sensor data type: {} for sensor {}",
-                    data.getClass().getSimpleName(), sensorId);
-            return null;
-        }
-    }
-
-    private void executeActions(Map<String, Action> actions, String scenarioName, String hubId) {
+    private void executeActions(Map<String, Action> actions, String scenarioName, List<PlannedAction> planned) {
         for (Map.Entry<String, Action> entry : actions.entrySet()) {
             String sensorId = entry.getKey();
             Action action = entry.getValue();
             log.info("Executing action: device={}, type={}, value={}",
                     sensorId, action.getType(), action.getValue());
 
-            hubRouterClient.sendDeviceAction(hubId, scenarioName, sensorId, action);
+            planned.add(new PlannedAction(scenarioName, sensorId, action));
         }
     }
+
+    private record HubSensorTimestamps(HubRules rules, Map<String, Long> timestamps) {
+    }
 }
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.AnalyzerProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Решает, выполнять ли действия сценария, по результату проверки его условий. Признак отработанного
+// выполнения условий и время последнего срабатывания каждого сценария хранятся в памяти и заводятся при
+// первом снимке хаба: до этого условия считаются невыполненными. После перезагрузки сценариев хаба
+// состояние переносится по имени сценария, новые сценарии начинают с невыполненных условий
+@Component
+@RequiredArgsConstructor
+public class ScenarioFiringPolicy {
+
+    private final AnalyzerProperties analyzerProperties;
+    private final Map<String, HubFiringState> hubs = new ConcurrentHashMap<>();
+
+    public boolean shouldFire(String hubId, HubRules rules, int scenario, boolean conditionsMet, long timestamp) {
+        HubFiringState state = hubs.get(hubId);
+        if (state == null || state.rules != rules) {
+            state = new HubFiringState(rules, state, analyzerProperties.getFiring());
+            hubs.put(hubId, state);
+        }
+
+        if (!conditionsMet) {
+            state.lastResult[scenario] = false;
+            return false;
+        }
+        if (analyzerProperties.getFiring().getMode() == AnalyzerProperties.FiringMode.EDGE
+                && state.lastResult[scenario]) {
+            return false;
+        }
+
+        // Подавленный интервалом фронт остаётся неотработанным: lastResult не меняется,
+        // и сценарий сработает на первой проверке после интервала, если условия всё ещё выполнены
+        long minInterval = state.minInterval[scenario];
+        if (minInterval > 0 && state.lastFired[scenario] != Long.MIN_VALUE
+                && timestamp - state.lastFired[scenario] < minInterval) {
+            return false;
+        }
+        state.lastResult[scenario] = true;
+        state.lastFired[scenario] = timestamp;
+        return true;
+    }
+
+    private static class HubFiringState {
+        private final HubRules rules;
+        private final boolean[] lastResult;
+        private final long[] lastFired;
+        private final long[] minInterval;
+
+        private HubFiringState(HubRules rules, HubFiringState previous, AnalyzerProperties.Firing firing) {
+            List<ScenarioRule> scenarios = rules.scenarios();
+            this.rules = rules;
+            this.lastResult = new boolean[scenarios.size()];
+            this.lastFired = new long[scenarios.size()];
+            this.minInterval = new long[scenarios.size()];
+            Arrays.fill(lastFired, Long.MIN_VALUE);
+
+            Map<String, Integer> previousIndex = new HashMap<>();
+            if (previous != null) {
+                List<ScenarioRule> previousScenarios = previous.rules.scenarios();
+                for (int i = 0; i < previousScenarios.size(); i++) {
+                    previousIndex.put(previousScenarios.get(i).name(), i);
+                }
+            }
+            for (int i = 0; i < scenarios.size(); i++) {
+                String name = scenarios.get(i).name();
+                minInterval[i] = firing.getScenarioRefireIntervals()
+                        .getOrDefault(name, firing.getMinRefireInterval())
+                        .toMillis();
+                Integer before = previousIndex.get(name);
+                if (before != null) {
+                    lastResult[i] = previous.lastResult[before];
+                    lastFired[i] = previous.lastFired[before];
+                }
+            }
+        }
+    }
+}
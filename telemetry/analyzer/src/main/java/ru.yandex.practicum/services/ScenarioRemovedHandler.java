@@ -2,6 +2,7 @@ package ru.yandex.practicum.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.model.Scenario;
@@ -18,6 +19,7 @@ import java.util.Optional;
 public class ScenarioRemovedHandler implements HubEventHandler {
 
     private final ScenarioRepository scenarioRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -27,6 +29,7 @@ public class ScenarioRemovedHandler implements HubEventHandler {
                 scenarioRemovedEvent.getName());
         if (scenario.isPresent()) {
             scenarioRepository.delete(scenario.get());
+            eventPublisher.publishEvent(new ScenarioRulesChangedEvent(hubEventAvro.getHubId()));
         }
     }
 
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.services;
+
+import ru.yandex.practicum.model.Action;
+
+import java.util.List;
+import java.util.Map;
+
+// Отвязанная от сессии JPA копия сценария для анализа снимков
+public record ScenarioRule(String hubId,
+                           String name,
+                           List<CompiledCondition> conditions,
+                           Map<String, Action> actions) {
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.model.Condition;
+import ru.yandex.practicum.model.Scenario;
+import ru.yandex.practicum.model.Sensor;
+import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.repository.ScenarioRulesView;
+import ru.yandex.practicum.repository.SensorRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Сценарии хабов в памяти: загружаются при первом снимке хаба и сбрасываются после фиксации
+// транзакции, изменившей сценарии хаба
+@Slf4j
+@Component
+public class ScenarioRuleCache {
+
+    private final ScenarioRepository scenarioRepository;
+    private final SensorRepository sensorRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConditionCompiler conditionCompiler;
+    private final ScenarioRulesCodec rulesCodec;
+    private final AnalyzerProperties analyzerProperties;
+
+    // Сброс оставляет под ключом хаба только новую версию, поэтому загрузка, начатая до сброса,
+    // не вернёт в кэш устаревшие сценарии: версия сверяется и запись ставится одним compute
+    private final Map<String, CachedRules> rules = new ConcurrentHashMap<>();
+
+    public ScenarioRuleCache(ScenarioRepository scenarioRepository,
+                             SensorRepository sensorRepository,
+                             PlatformTransactionManager transactionManager,
+                             ConditionCompiler conditionCompiler,
+                             ScenarioRulesCodec rulesCodec,
+                             AnalyzerProperties analyzerProperties) {
+        this.scenarioRepository = scenarioRepository;
+        this.sensorRepository = sensorRepository;
+        this.conditionCompiler = conditionCompiler;
+        this.rulesCodec = rulesCodec;
+        this.analyzerProperties = analyzerProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public HubRules getRules(String hubId) {
+        CachedRules cached = rules.get(hubId);
+        if (cached != null && cached.rules() != null) {
+            return cached.rules();
+        }
+
+        // Загрузка идёт вне compute: запрос к базе не должен держать блокировку ключа
+        long version = cached == null ? 0 : cached.version();
+        HubRules hubRules = load(hubId);
+        rules.compute(hubId, (id, current) -> (current == null ? 0 : current.version()) == version
+                ? new CachedRules(version, hubRules)
+                : current);
+        return hubRules;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScenarioRulesChanged(ScenarioRulesChangedEvent event) {
+        rules.compute(event.hubId(), (id, current) ->
+                new CachedRules(current == null ? 1 : current.version() + 1, null));
+        log.debug("Scenario rules of hub {} invalidated", event.hubId());
+    }
+
+    private HubRules load(String hubId) {
+        HubRules hubRules = transactionTemplate.execute(status -> {
+            Map<String, DeviceTypeAvro> deviceTypes = deviceTypes(hubId);
+            return HubRules.of(analyzerProperties.getStorage().isEncodedRules()
+                    ? loadEncoded(hubId, deviceTypes)
+                    : scenarioRepository.findByHubId(hubId).stream()
+                            .map(scenario -> toRule(scenario, deviceTypes))
+                            .toList());
+        });
+        log.info("Loaded {} scenarios for hub: {}", hubRules.scenarios().size(), hubId);
+        return hubRules;
+    }
+
+    // Сценарии, сохранённые до появления столбца rules, читаются из связанных таблиц
+    private List<ScenarioRule> loadEncoded(String hubId, Map<String, DeviceTypeAvro> deviceTypes) {
+        List<ScenarioRule> scenarioRules = new ArrayList<>();
+        for (ScenarioRulesView view : scenarioRepository.findRulesByHubId(hubId)) {
+            if (view.getRules() != null) {
+                ScenarioRulesCodec.DecodedRules decoded = rulesCodec.decode(view.getRules());
+                scenarioRules.add(toRule(view.getHubId(), view.getName(), decoded.conditions(), decoded.actions(),
+                        deviceTypes));
+            } else {
+                scenarioRepository.findById(view.getId())
+                        .map(scenario -> toRule(scenario, deviceTypes))
+                        .ifPresent(scenarioRules::add);
+            }
+        }
+        return scenarioRules;
+    }
+
+    // Датчики, добавленные до появления sensors.type, в карту не попадают
+    private Map<String, DeviceTypeAvro> deviceTypes(String hubId) {
+        Map<String, DeviceTypeAvro> deviceTypes = new HashMap<>();
+        for (Sensor sensor : sensorRepository.findByHubId(hubId)) {
+            if (sensor.getType() != null) {
+                deviceTypes.put(sensor.getId(), sensor.getType());
+            }
+        }
+        return deviceTypes;
+    }
+
+    private ScenarioRule toRule(Scenario scenario, Map<String, DeviceTypeAvro> deviceTypes) {
+        return toRule(scenario.getHubId(), scenario.getName(), scenario.getConditions(), scenario.getActions(),
+                deviceTypes);
+    }
+
+    private ScenarioRule toRule(String hubId, String name, Map<String, Condition> conditions,
+                                Map<String, Action> actions, Map<String, DeviceTypeAvro> deviceTypes) {
+        return new ScenarioRule(
+                hubId,
+                name,
+                conditions.entrySet().stream()
+                        .map(entry -> conditionCompiler.compile(entry.getKey(), entry.getValue(),
+                                deviceTypes.get(entry.getKey())))
+                        .toList(),
+                Map.copyOf(actions)
+        );
+    }
+
+    // rules == null: сценарии хаба сброшены и ещё не загружены заново
+    private record CachedRules(long version, HubRules rules) {
+    }
+}
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.services;
+
+// Публикуется обработчиками событий хаба, изменившими его сценарии
+public record ScenarioRulesChangedEvent(String hubId) {
+}
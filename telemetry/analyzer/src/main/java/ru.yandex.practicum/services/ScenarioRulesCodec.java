@@ -0,0 +1,107 @@
+package ru.yandex.practicum.services;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.model.Condition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Условия и действия сценария в одном столбце scenarios.rules:
+// версия, затем условия (датчик, тип, операция, значение) и действия (датчик, тип, значение).
+// Перечисления пишутся по имени, чтобы не зависеть от порядка констант в схеме Avro, датчики - по
+// возрастанию id, поэтому одинаковые правила всегда кодируются одинаково
+@Component
+public class ScenarioRulesCodec {
+
+    private static final int VERSION = 1;
+
+    public byte[] encode(Map<String, Condition> conditions, Map<String, Action> actions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(conditions.size());
+            for (Map.Entry<String, Condition> entry : new TreeMap<>(conditions).entrySet()) {
+                Condition condition = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeName(out, condition.getType());
+                writeName(out, condition.getOperation());
+                writeValue(out, condition.getValue());
+            }
+            out.writeInt(actions.size());
+            for (Map.Entry<String, Action> entry : new TreeMap<>(actions).entrySet()) {
+                Action action = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeName(out, action.getType());
+                writeValue(out, action.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode scenario rules", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public DecodedRules decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported scenario rules version: " + version);
+            }
+            int conditionCount = in.readInt();
+            Map<String, Condition> conditions = new HashMap<>(conditionCount * 2);
+            for (int i = 0; i < conditionCount; i++) {
+                String sensorId = in.readUTF();
+                conditions.put(sensorId, Condition.builder()
+                        .type(readName(in, ConditionTypeAvro.class))
+                        .operation(readName(in, ConditionOperationAvro.class))
+                        .value(readValue(in))
+                        .build());
+            }
+            int actionCount = in.readInt();
+            Map<String, Action> actions = new HashMap<>(actionCount * 2);
+            for (int i = 0; i < actionCount; i++) {
+                String sensorId = in.readUTF();
+                actions.put(sensorId, Action.builder()
+                        .type(readName(in, ActionTypeAvro.class))
+                        .value(readValue(in))
+                        .build());
+            }
+            return new DecodedRules(conditions, actions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode scenario rules", e);
+        }
+    }
+
+    private static void writeName(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeUTF(value == null ? "" : value.name());
+    }
+
+    private static <E extends Enum<E>> E readName(DataInputStream in, Class<E> type) throws IOException {
+        String name = in.readUTF();
+        return name.isEmpty() ? null : Enum.valueOf(type, name);
+    }
+
+    private static void writeValue(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readValue(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    public record DecodedRules(Map<String, Condition> conditions, Map<String, Action> actions) {
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.services;
+
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+// Поле показаний датчика одного типа, которое проверяет условие. Чтение - switch по константе,
+// без упаковки значения и без виртуального вызова на каждую проверку
+public enum SensorField {
+    CLIMATE_TEMPERATURE(ClimateSensorAvro.class),
+    TEMPERATURE(TemperatureSensorAvro.class),
+    HUMIDITY(ClimateSensorAvro.class),
+    CO2_LEVEL(ClimateSensorAvro.class),
+    LUMINOSITY(LightSensorAvro.class),
+    MOTION(MotionSensorAvro.class),
+    SWITCH(SwitchSensorAvro.class),
+    // Тип датчика не сохранён (добавлен до появления sensors.type): температура любого из двух датчиков
+    ANY_TEMPERATURE(null);
+
+    private final Class<?> payloadType;
+
+    SensorField(Class<?> payloadType) {
+        this.payloadType = payloadType;
+    }
+
+    public boolean accepts(Object data) {
+        if (payloadType != null) {
+            return data != null && data.getClass() == payloadType;
+        }
+        return data instanceof ClimateSensorAvro || data instanceof TemperatureSensorAvro;
+    }
+
+    // Вызывается только для показаний, принятых accepts
+    public int read(Object data) {
+        return switch (this) {
+            case CLIMATE_TEMPERATURE -> ((ClimateSensorAvro) data).getTemperatureC();
+            case TEMPERATURE -> ((TemperatureSensorAvro) data).getTemperatureC();
+            case HUMIDITY -> ((ClimateSensorAvro) data).getHumidity();
+            case CO2_LEVEL -> ((ClimateSensorAvro) data).getCo2Level();
+            case LUMINOSITY -> ((LightSensorAvro) data).getLuminosity();
+            case MOTION -> ((MotionSensorAvro) data).getMotion() ? 1 : 0;
+            case SWITCH -> ((SwitchSensorAvro) data).getState() ? 1 : 0;
+            case ANY_TEMPERATURE -> data instanceof ClimateSensorAvro climate
+                    ? climate.getTemperatureC()
+                    : ((TemperatureSensorAvro) data).getTemperatureC();
+        };
+    }
+
+    // Поле, которое условие type проверяет на датчике deviceType, или null, если такой датчик его не измеряет.
+    // deviceType == null - тип датчика неизвестен, поле выбирается только по типу условия
+    public static SensorField of(ConditionTypeAvro type, DeviceTypeAvro deviceType) {
+        if (deviceType == null) {
+            return switch (type) {
+                case TEMPERATURE -> ANY_TEMPERATURE;
+                case HUMIDITY -> HUMIDITY;
+                case CO2LEVEL -> CO2_LEVEL;
+                case LUMINOSITY -> LUMINOSITY;
+                case MOTION -> MOTION;
+                case SWITCH -> SWITCH;
+            };
+        }
+        return switch (type) {
+            case TEMPERATURE -> switch (deviceType) {
+                case CLIMATE_SENSOR -> CLIMATE_TEMPERATURE;
+                case TEMPERATURE_SENSOR -> TEMPERATURE;
+                default -> null;
+            };
+            case HUMIDITY -> deviceType == DeviceTypeAvro.CLIMATE_SENSOR ? HUMIDITY : null;
+            case CO2LEVEL -> deviceType == DeviceTypeAvro.CLIMATE_SENSOR ? CO2_LEVEL : null;
+            case LUMINOSITY -> deviceType == DeviceTypeAvro.LIGHT_SENSOR ? LUMINOSITY : null;
+            case MOTION -> deviceType == DeviceTypeAvro.MOTION_SENSOR ? MOTION : null;
+            case SWITCH -> deviceType == DeviceTypeAvro.SWITCH_SENSOR ? SWITCH : null;
+        };
+    }
+}
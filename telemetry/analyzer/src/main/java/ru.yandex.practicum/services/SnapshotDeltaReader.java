@@ -0,0 +1,49 @@
+package ru.yandex.practicum.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Восстанавливает полные снимки хабов из дельт агрегатора.
+// При пропуске версии состояние хаба сбрасывается до следующего ключевого кадра
+@Slf4j
+@Component
+public class SnapshotDeltaReader {
+
+    private final Map<String, HubState> hubs = new HashMap<>();
+
+    public Optional<SensorsSnapshotAvro> apply(SensorsSnapshotDeltaAvro delta) {
+        String hubId = delta.getHubId();
+        HubState state = hubs.get(hubId);
+
+        if (delta.getKeyframe()) {
+            state = new HubState();
+            hubs.put(hubId, state);
+        } else if (state == null) {
+            log.debug("Skipping delta {} for hub {} until the next keyframe", delta.getVersion(), hubId);
+            return Optional.empty();
+        } else if (state.version != delta.getBaseVersion()) {
+            log.warn("Snapshot delta gap for hub {}: local version {}, delta base version {}. Waiting for keyframe",
+                    hubId, state.version, delta.getBaseVersion());
+            hubs.remove(hubId);
+            return Optional.empty();
+        }
+
+        state.sensorsState.putAll(delta.getSensorsState());
+        state.version = delta.getVersion();
+
+        // Копия карты: состояние хаба продолжит меняться со следующими дельтами
+        return Optional.of(new SensorsSnapshotAvro(hubId, delta.getTimestamp(), new HashMap<>(state.sensorsState)));
+    }
+
+    private static class HubState {
+        private long version;
+        private final Map<String, SensorStateAvro> sensorsState = new HashMap<>();
+    }
+}
@@ -5,20 +5,24 @@ CREATE TABLE IF NOT EXISTS scenarios (
                                          UNIQUE(hub_id, name)
     );
 
+ALTER TABLE scenarios ADD COLUMN IF NOT EXISTS rules BYTEA;
+
 CREATE TABLE IF NOT EXISTS sensors (
                                        id VARCHAR PRIMARY KEY,
                                        hub_id VARCHAR
 );
 
+ALTER TABLE sensors ADD COLUMN IF NOT EXISTS type VARCHAR;
+
 CREATE TABLE IF NOT EXISTS conditions (
-                                          id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                                          id BIGINT PRIMARY KEY,
                                           type VARCHAR,
                                           operation VARCHAR,
                                           condition_value INTEGER
 );
 
 CREATE TABLE IF NOT EXISTS actions (
-                                       id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                                       id BIGINT PRIMARY KEY,
                                        type VARCHAR,
                                        action_value INTEGER
 );
@@ -37,24 +41,18 @@ CREATE TABLE IF NOT EXISTS scenario_actions (
     PRIMARY KEY (scenario_id, sensor_id, action_id)
     );
 
-CREATE OR REPLACE FUNCTION check_hub_id()
-RETURNS TRIGGER AS
-'
-BEGIN
-    IF (SELECT hub_id FROM scenarios WHERE id = NEW.scenario_id) != (SELECT hub_id FROM sensors WHERE id = NEW.sensor_id) THEN
-        RAISE EXCEPTION ''Hub IDs do not match for scenario_id % and sensor_id %'', NEW.scenario_id, NEW.sensor_id;
-    END IF;
-    RETURN NEW;
-END;
-'
-LANGUAGE plpgsql;
-
-CREATE OR REPLACE TRIGGER tr_bi_scenario_conditions_hub_id_check
-BEFORE INSERT ON scenario_conditions
-FOR EACH ROW
-EXECUTE FUNCTION check_hub_id();
-
-CREATE OR REPLACE TRIGGER tr_bi_scenario_actions_hub_id_check
-BEFORE INSERT ON scenario_actions
-FOR EACH ROW
-EXECUTE FUNCTION check_hub_id();
\ No newline at end of file
+-- Идентификаторы условий и действий выдаёт Hibernate из последовательностей блоками по 50,
+-- чтобы вставки шли пакетами. Для баз, созданных с IDENTITY, столбец переводится на последовательность
+ALTER TABLE conditions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE actions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+CREATE SEQUENCE IF NOT EXISTS conditions_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS actions_seq INCREMENT BY 50;
+
+SELECT setval('conditions_seq', GREATEST((SELECT last_value FROM conditions_seq), (SELECT COALESCE(MAX(id), 0) FROM conditions) + 50));
+SELECT setval('actions_seq', GREATEST((SELECT last_value FROM actions_seq), (SELECT COALESCE(MAX(id), 0) FROM actions) + 50));
+
+-- Принадлежность датчиков хабу сценария проверяет ScenarioAddedHandler один раз на сценарий
+DROP TRIGGER IF EXISTS tr_bi_scenario_conditions_hub_id_check ON scenario_conditions;
+DROP TRIGGER IF EXISTS tr_bi_scenario_actions_hub_id_check ON scenario_actions;
+DROP FUNCTION IF EXISTS check_hub_id();
@@ -0,0 +1,180 @@
+package ru.yandex.practicum.grpc;
+
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.config.ProcessingThreads;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.model.Action;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// STREAM на hub router в памяти процесса: первый поток сервер держит и подтверждает или роняет
+// по команде теста, остальные подтверждает сразу после закрытия клиентом
+class HubRouterClientStreamTest {
+
+    private final BlockingQueue<ServerStream> heldStreams = new LinkedBlockingQueue<>();
+    // Сценарии подтверждённых действий в порядке подтверждения
+    private final List<String> acknowledged = new CopyOnWriteArrayList<>();
+
+    private Server server;
+    private ManagedChannel channel;
+    private HubRouterClient client;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new HubRouterControllerGrpc.HubRouterControllerImplBase() {
+                    private int opened;
+
+                    @Override
+                    public synchronized StreamObserver<DeviceActionRequest> streamDeviceActions(
+                            StreamObserver<Empty> response) {
+                        ServerStream stream = new ServerStream(response, ++opened > 1);
+                        if (!stream.autoAcknowledge) {
+                            heldStreams.add(stream);
+                        }
+                        return stream;
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    void stop() {
+        if (client != null) {
+            client.shutdown();
+        }
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void laterActionOfHubWaitsForRotatedStreamAndFollowsItsRetry() throws Exception {
+        client = client(1);
+
+        client.sendDeviceAction("hub-1", "first", "sensor-1", action(ActionTypeAvro.DEACTIVATE));
+        client.sendDeviceAction("hub-1", "second", "sensor-1", action(ActionTypeAvro.ACTIVATE));
+
+        // Первое действие записано, и поток закрыт по размеру пачки, но ещё не подтверждён
+        ServerStream rotated = heldStreams.poll(5, TimeUnit.SECONDS);
+        assertThat(rotated).isNotNull();
+        assertThat(rotated.halfClosed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(rotated.scenarios()).containsExactly("first");
+
+        // Второе действие хаба не уходит в новый поток раньше подтверждения закрытого
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(acknowledged).isEmpty();
+
+        rotated.fail();
+        awaitTrue(() -> acknowledged.size() == 2);
+        assertThat(acknowledged).containsExactly("first", "second");
+    }
+
+    @Test
+    void actionsOfHubShareOneOpenStream() throws Exception {
+        client = client(500);
+
+        for (int i = 0; i < 10; i++) {
+            client.sendDeviceAction("hub-1", "scenario-" + i, "sensor-1", action(ActionTypeAvro.ACTIVATE));
+        }
+
+        ServerStream stream = heldStreams.poll(5, TimeUnit.SECONDS);
+        assertThat(stream).isNotNull();
+        awaitTrue(() -> stream.scenarios().size() == 10);
+        assertThat(client.getUnacknowledged()).isEqualTo(10);
+    }
+
+    private HubRouterClient client(int streamBatchSize) {
+        AnalyzerProperties properties = new AnalyzerProperties();
+        AnalyzerProperties.HubRouter hubRouter = properties.getHubRouter();
+        hubRouter.setTransport(AnalyzerProperties.HubRouterTransport.STREAM);
+        hubRouter.setStreamBatchSize(streamBatchSize);
+        hubRouter.setStreamLifetime(Duration.ofSeconds(30));
+        hubRouter.setInitialBackoff(Duration.ofMillis(10));
+        hubRouter.setMaxBackoff(Duration.ofMillis(50));
+        properties.getProcessing().setDrainTimeout(Duration.ofSeconds(5));
+
+        HubRouterClient hubRouterClient = new HubRouterClient(properties, new ProcessingThreads(properties),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hubRouterClient, "hubRouterStub", HubRouterControllerGrpc.newStub(channel));
+        return hubRouterClient;
+    }
+
+    private static Action action(ActionTypeAvro type) {
+        return Action.builder().type(type).build();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting for condition").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    private class ServerStream implements StreamObserver<DeviceActionRequest> {
+        private final StreamObserver<Empty> response;
+        private final boolean autoAcknowledge;
+        private final List<DeviceActionRequest> received = new ArrayList<>();
+        private final CountDownLatch halfClosed = new CountDownLatch(1);
+
+        private ServerStream(StreamObserver<Empty> response, boolean autoAcknowledge) {
+            this.response = response;
+            this.autoAcknowledge = autoAcknowledge;
+        }
+
+        @Override
+        public synchronized void onNext(DeviceActionRequest request) {
+            received.add(request);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            halfClosed.countDown();
+            if (autoAcknowledge) {
+                scenarios().forEach(acknowledged::add);
+                response.onNext(Empty.getDefaultInstance());
+                response.onCompleted();
+            }
+        }
+
+        synchronized List<String> scenarios() {
+            return received.stream().map(DeviceActionRequest::getScenarioName).toList();
+        }
+
+        void fail() {
+            response.onError(Status.UNAVAILABLE.asRuntimeException());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.processors;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Результат сжатия сравнивается по смещениям оставшихся записей пакета
+class HubEventCompactorTest {
+
+    @Test
+    void deviceAddedThenRemovedLeavesRemoval() {
+        assertThat(compact(
+                deviceAdded("hub-1", "d1"),
+                deviceRemoved("hub-1", "d1")))
+                .containsExactly(1L);
+    }
+
+    @Test
+    void deviceRemovedThenAddedLeavesAdditionAtFirstPlace() {
+        assertThat(compact(
+                deviceRemoved("hub-1", "d1"),
+                deviceAdded("hub-1", "d2"),
+                deviceAdded("hub-1", "d1")))
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void deviceRemovalIsPlacedAtLastEvent() {
+        assertThat(compact(
+                deviceAdded("hub-1", "d1"),
+                deviceAdded("hub-1", "d2"),
+                deviceRemoved("hub-1", "d1")))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void scenarioAddedThenRemovedLeavesRemovalAtFirstPlace() {
+        assertThat(compact(
+                scenarioAdded("hub-1", "s1"),
+                scenarioAdded("hub-1", "s2"),
+                scenarioRemoved("hub-1", "s1")))
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void scenarioRemovedThenAddedLeavesAdditionAtLastPlace() {
+        // Новая версия сценария может ссылаться на устройство, добавленное между событиями
+        assertThat(compact(
+                scenarioRemoved("hub-1", "s1"),
+                deviceAdded("hub-1", "d1"),
+                scenarioAdded("hub-1", "s1")))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void repeatedScenarioAdditionsLeaveLatest() {
+        assertThat(compact(
+                scenarioAdded("hub-1", "s1"),
+                scenarioAdded("hub-1", "s1"),
+                scenarioAdded("hub-1", "s1")))
+                .containsExactly(2L);
+    }
+
+    @Test
+    void scenarioAdditionSeparatesDeviceEventsOfHub() {
+        assertThat(compact(
+                deviceRemoved("hub-1", "d1"),
+                scenarioAdded("hub-1", "s1"),
+                deviceAdded("hub-1", "d1")))
+                .containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    void scenarioRemovalSeparatesDeviceEventsOfHub() {
+        assertThat(compact(
+                deviceAdded("hub-1", "d1"),
+                scenarioRemoved("hub-1", "s1"),
+                deviceRemoved("hub-1", "d1")))
+                .containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    void deviceEventsAfterScenarioEventAreStillCompacted() {
+        assertThat(compact(
+                deviceRemoved("hub-1", "d1"),
+                scenarioAdded("hub-1", "s1"),
+                deviceAdded("hub-1", "d1"),
+                deviceRemoved("hub-1", "d1")))
+                .containsExactly(0L, 1L, 3L);
+    }
+
+    @Test
+    void scenarioEventOfOtherHubDoesNotSeparateDeviceEvents() {
+        assertThat(compact(
+                deviceRemoved("hub-1", "d1"),
+                scenarioAdded("hub-2", "s1"),
+                deviceAdded("hub-1", "d1")))
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void sameIdsOfDifferentHubsAreSeparateEntities() {
+        assertThat(compact(
+                deviceAdded("hub-1", "d1"),
+                deviceRemoved("hub-2", "d1"),
+                scenarioAdded("hub-1", "s1"),
+                scenarioRemoved("hub-2", "s1")))
+                .containsExactly(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    void deviceAndScenarioWithSameIdAreSeparateEntities() {
+        assertThat(compact(
+                deviceAdded("hub-1", "x"),
+                scenarioRemoved("hub-1", "x")))
+                .containsExactly(0L, 1L);
+    }
+
+    private static List<Long> compact(HubEventAvro... events) {
+        List<ConsumerRecord<String, HubEventAvro>> records = new ArrayList<>();
+        for (int offset = 0; offset < events.length; offset++) {
+            HubEventAvro event = events[offset];
+            records.add(new ConsumerRecord<>("telemetry.hubs.v1", 0, offset, event.getHubId(), event));
+        }
+        return HubEventCompactor.compact(records).stream().map(ConsumerRecord::offset).toList();
+    }
+
+    private static HubEventAvro deviceAdded(String hubId, String id) {
+        return event(hubId, new DeviceAddedEventAvro(id, DeviceTypeAvro.MOTION_SENSOR));
+    }
+
+    private static HubEventAvro deviceRemoved(String hubId, String id) {
+        return event(hubId, new DeviceRemovedEventAvro(id));
+    }
+
+    private static HubEventAvro scenarioAdded(String hubId, String name) {
+        return event(hubId, new ScenarioAddedEventAvro(name, List.of(), List.of()));
+    }
+
+    private static HubEventAvro scenarioRemoved(String hubId, String name) {
+        return event(hubId, new ScenarioRemovedEventAvro(name));
+    }
+
+    private static HubEventAvro event(String hubId, Object payload) {
+        return new HubEventAvro(hubId, Instant.ofEpochMilli(1_700_000_000_000L), payload);
+    }
+}
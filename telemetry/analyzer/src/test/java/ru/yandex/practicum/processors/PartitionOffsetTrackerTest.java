@@ -0,0 +1,124 @@
+package ru.yandex.practicum.processors;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionOffsetTrackerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("telemetry.snapshots.v1", 0);
+    private static final TopicPartition P1 = new TopicPartition("telemetry.snapshots.v1", 1);
+
+    private final PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+
+    @Test
+    void commitsOnlyUpToFirstIncompleteRecord() {
+        PartitionOffsetTracker.TrackedRecord r0 = tracker.track(P0, 0);
+        PartitionOffsetTracker.TrackedRecord r1 = tracker.track(P0, 1);
+        PartitionOffsetTracker.TrackedRecord r2 = tracker.track(P0, 2);
+
+        r1.complete();
+        r2.complete();
+        assertThat(tracker.completedOffsets()).isEmpty();
+
+        r0.complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(3)));
+    }
+
+    @Test
+    void advancesAsOutOfOrderCompletionsFillIn() {
+        PartitionOffsetTracker.TrackedRecord r0 = tracker.track(P0, 0);
+        PartitionOffsetTracker.TrackedRecord r1 = tracker.track(P0, 1);
+        PartitionOffsetTracker.TrackedRecord r2 = tracker.track(P0, 2);
+
+        r0.complete();
+        r2.complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(1)));
+        tracker.committed();
+
+        r1.complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(3)));
+    }
+
+    @Test
+    void commitsPastOffsetGaps() {
+        // Смещения после сжатия топика или маркеров транзакций идут с пропусками
+        List<PartitionOffsetTracker.TrackedRecord> records = List.of(
+                tracker.track(P0, 3), tracker.track(P0, 7), tracker.track(P0, 12));
+
+        records.get(0).complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(4)));
+
+        records.get(2).complete();
+        records.get(1).complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(13)));
+    }
+
+    @Test
+    void partitionsAdvanceIndependently() {
+        PartitionOffsetTracker.TrackedRecord p0 = tracker.track(P0, 0);
+        tracker.track(P0, 1);
+        PartitionOffsetTracker.TrackedRecord p1 = tracker.track(P1, 10);
+
+        p0.complete();
+        p1.complete();
+
+        assertThat(tracker.completedOffsets()).containsOnly(
+                Map.entry(P0, new OffsetAndMetadata(1)),
+                Map.entry(P1, new OffsetAndMetadata(11)));
+    }
+
+    @Test
+    void keepsOffsetsUntilCommitted() {
+        tracker.track(P0, 0).complete();
+
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(1)));
+        // Фиксация прервана: смещение возвращается снова
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(1)));
+
+        tracker.committed();
+        assertThat(tracker.completedOffsets()).isEmpty();
+    }
+
+    @Test
+    void forgetDropsRevokedPartitionsOnly() {
+        tracker.track(P0, 0).complete();
+        tracker.track(P1, 0).complete();
+        tracker.completedOffsets();
+
+        tracker.forget(List.of(P0));
+
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P1, new OffsetAndMetadata(1)));
+    }
+
+    @Test
+    void lateCompletionAfterRevokeIsIgnored() {
+        PartitionOffsetTracker.TrackedRecord inFlight = tracker.track(P0, 0);
+        tracker.forget(List.of(P0));
+
+        inFlight.complete();
+
+        assertThat(tracker.completedOffsets()).isEmpty();
+    }
+
+    @Test
+    void lateCompletionAfterReassignmentDoesNotAdvanceNewRecords() {
+        PartitionOffsetTracker.TrackedRecord old = tracker.track(P0, 5);
+        tracker.forget(List.of(P0));
+        // Партиция снова назначена, чтение с зафиксированного смещения
+        PartitionOffsetTracker.TrackedRecord reread = tracker.track(P0, 5);
+        PartitionOffsetTracker.TrackedRecord next = tracker.track(P0, 6);
+
+        old.complete();
+        next.complete();
+        assertThat(tracker.completedOffsets()).isEmpty();
+
+        reread.complete();
+        assertThat(tracker.completedOffsets()).containsExactly(Map.entry(P0, new OffsetAndMetadata(7)));
+    }
+}
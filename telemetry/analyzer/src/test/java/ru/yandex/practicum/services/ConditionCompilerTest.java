@@ -0,0 +1,118 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.model.Condition;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionCompilerTest {
+
+    private final ConditionCompiler compiler = new ConditionCompiler();
+
+    @Test
+    void specializesConditionForDeviceType() {
+        assertThat(field(ConditionTypeAvro.TEMPERATURE, DeviceTypeAvro.CLIMATE_SENSOR))
+                .isEqualTo(SensorField.CLIMATE_TEMPERATURE);
+        assertThat(field(ConditionTypeAvro.TEMPERATURE, DeviceTypeAvro.TEMPERATURE_SENSOR))
+                .isEqualTo(SensorField.TEMPERATURE);
+        assertThat(field(ConditionTypeAvro.HUMIDITY, DeviceTypeAvro.CLIMATE_SENSOR)).isEqualTo(SensorField.HUMIDITY);
+        assertThat(field(ConditionTypeAvro.CO2LEVEL, DeviceTypeAvro.CLIMATE_SENSOR)).isEqualTo(SensorField.CO2_LEVEL);
+        assertThat(field(ConditionTypeAvro.LUMINOSITY, DeviceTypeAvro.LIGHT_SENSOR))
+                .isEqualTo(SensorField.LUMINOSITY);
+        assertThat(field(ConditionTypeAvro.MOTION, DeviceTypeAvro.MOTION_SENSOR)).isEqualTo(SensorField.MOTION);
+        assertThat(field(ConditionTypeAvro.SWITCH, DeviceTypeAvro.SWITCH_SENSOR)).isEqualTo(SensorField.SWITCH);
+    }
+
+    @Test
+    void rejectsConditionThatDeviceDoesNotMeasure() {
+        assertThat(field(ConditionTypeAvro.LUMINOSITY, DeviceTypeAvro.MOTION_SENSOR)).isNull();
+        assertThat(field(ConditionTypeAvro.HUMIDITY, DeviceTypeAvro.TEMPERATURE_SENSOR)).isNull();
+        assertThat(field(ConditionTypeAvro.TEMPERATURE, DeviceTypeAvro.SWITCH_SENSOR)).isNull();
+
+        CompiledCondition rejected = compiler.compile("sensor-1",
+                condition(ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.GREATER_THAN, -1),
+                DeviceTypeAvro.MOTION_SENSOR);
+        assertThat(rejected.test(snapshot(new LightSensorAvro(0, 100)))).isFalse();
+    }
+
+    @Test
+    void comparesReadingWithConditionValue() {
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 20,
+                DeviceTypeAvro.CLIMATE_SENSOR, new ClimateSensorAvro(21, 40, 600))).isTrue();
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 21,
+                DeviceTypeAvro.CLIMATE_SENSOR, new ClimateSensorAvro(21, 40, 600))).isFalse();
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.LOWER_THAN, 0,
+                DeviceTypeAvro.TEMPERATURE_SENSOR, new TemperatureSensorAvro(-5, 23))).isTrue();
+        assertThat(test(ConditionTypeAvro.HUMIDITY, ConditionOperationAvro.EQUALS, 40,
+                DeviceTypeAvro.CLIMATE_SENSOR, new ClimateSensorAvro(21, 40, 600))).isTrue();
+        assertThat(test(ConditionTypeAvro.CO2LEVEL, ConditionOperationAvro.GREATER_THAN, 800,
+                DeviceTypeAvro.CLIMATE_SENSOR, new ClimateSensorAvro(21, 40, 600))).isFalse();
+        assertThat(test(ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.LOWER_THAN, 500,
+                DeviceTypeAvro.LIGHT_SENSOR, new LightSensorAvro(0, 300))).isTrue();
+        assertThat(test(ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1,
+                DeviceTypeAvro.MOTION_SENSOR, new MotionSensorAvro(0, true, 0))).isTrue();
+        assertThat(test(ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, 1,
+                DeviceTypeAvro.SWITCH_SENSOR, new SwitchSensorAvro(false))).isFalse();
+    }
+
+    @Test
+    void unknownDeviceTypeIsCheckedByReadingType() {
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 20,
+                null, new ClimateSensorAvro(21, 40, 600))).isTrue();
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 20,
+                null, new TemperatureSensorAvro(21, 70))).isTrue();
+        assertThat(test(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, -1,
+                null, new LightSensorAvro(0, 300))).isFalse();
+    }
+
+    @Test
+    void readingOfOtherTypeOrMissingSensorIsNotMet() {
+        assertThat(test(ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.GREATER_THAN, -1,
+                DeviceTypeAvro.LIGHT_SENSOR, new ClimateSensorAvro(21, 40, 600))).isFalse();
+
+        CompiledCondition condition = compiler.compile("other-sensor",
+                condition(ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.GREATER_THAN, -1),
+                DeviceTypeAvro.LIGHT_SENSOR);
+        assertThat(condition.test(snapshot(new LightSensorAvro(0, 300)))).isFalse();
+    }
+
+    @Test
+    void incompleteConditionIsNeverMet() {
+        CompiledCondition condition = compiler.compile("sensor-1",
+                Condition.builder().type(ConditionTypeAvro.MOTION).build(), DeviceTypeAvro.MOTION_SENSOR);
+
+        assertThat(condition.field()).isNull();
+        assertThat(condition.test(snapshot(new MotionSensorAvro(0, true, 0)))).isFalse();
+    }
+
+    private SensorField field(ConditionTypeAvro type, DeviceTypeAvro deviceType) {
+        return compiler.compile("sensor-1", condition(type, ConditionOperationAvro.EQUALS, 0), deviceType).field();
+    }
+
+    private boolean test(ConditionTypeAvro type, ConditionOperationAvro operation, int value,
+                         DeviceTypeAvro deviceType, Object data) {
+        return compiler.compile("sensor-1", condition(type, operation, value), deviceType).test(snapshot(data));
+    }
+
+    private static Condition condition(ConditionTypeAvro type, ConditionOperationAvro operation, int value) {
+        return Condition.builder().type(type).operation(operation).value(value).build();
+    }
+
+    private static SensorsSnapshotAvro snapshot(Object data) {
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        return new SensorsSnapshotAvro("hub-1", timestamp, Map.of("sensor-1", new SensorStateAvro(timestamp, data)));
+    }
+}
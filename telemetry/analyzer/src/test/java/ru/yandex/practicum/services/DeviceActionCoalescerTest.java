@@ -0,0 +1,75 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.grpc.HubRouterClient;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.model.Action;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceActionCoalescerTest {
+
+    private final HubRouterClient hubRouterClient = mock(HubRouterClient.class);
+    private DeviceActionCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        AnalyzerProperties properties = new AnalyzerProperties();
+        properties.getCoalescing().setEnabled(true);
+        coalescer = new DeviceActionCoalescer(hubRouterClient, properties);
+    }
+
+    @Test
+    void suppressesCommandAlreadySentToDevice() {
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        when(hubRouterClient.sendDeviceAction(anyString(), anyString(), anyString(), any())).thenReturn(pending);
+
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+        pending.complete(null);
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+
+        verify(hubRouterClient, times(1)).sendDeviceAction(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void resendsCommandThatHubRouterDidNotAccept() {
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        when(hubRouterClient.sendDeviceAction(anyString(), anyString(), anyString(), any()))
+                .thenReturn(pending, CompletableFuture.completedFuture(null));
+
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+        pending.completeExceptionally(new IllegalStateException("retries exhausted"));
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+
+        verify(hubRouterClient, times(2)).sendDeviceAction(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void failureOfOlderCommandKeepsNewerOne() {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        when(hubRouterClient.sendDeviceAction(anyString(), anyString(), anyString(), any()))
+                .thenReturn(first, CompletableFuture.completedFuture(null));
+
+        coalescer.dispatch("hub-1", List.of(planned("light-on", ActionTypeAvro.ACTIVATE)));
+        coalescer.dispatch("hub-1", List.of(planned("light-off", ActionTypeAvro.DEACTIVATE)));
+        first.completeExceptionally(new IllegalStateException("retries exhausted"));
+        coalescer.dispatch("hub-1", List.of(planned("light-off", ActionTypeAvro.DEACTIVATE)));
+
+        verify(hubRouterClient, times(2)).sendDeviceAction(anyString(), anyString(), anyString(), any());
+    }
+
+    private static PlannedAction planned(String scenarioName, ActionTypeAvro type) {
+        return new PlannedAction(scenarioName, "lamp-1", Action.builder().type(type).build());
+    }
+}
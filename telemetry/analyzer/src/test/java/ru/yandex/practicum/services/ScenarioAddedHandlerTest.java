@@ -0,0 +1,210 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.model.Condition;
+import ru.yandex.practicum.model.Scenario;
+import ru.yandex.practicum.model.Sensor;
+import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.repository.SensorRepository;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScenarioAddedHandlerTest {
+
+    private static final String HUB = "hub-1";
+
+    private final ScenarioRepository scenarioRepository = mock(ScenarioRepository.class);
+    private final SensorRepository sensorRepository = mock(SensorRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ScenarioRulesCodec rulesCodec = new ScenarioRulesCodec();
+    private ScenarioAddedHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new ScenarioAddedHandler(scenarioRepository, sensorRepository, eventPublisher, rulesCodec);
+        when(sensorRepository.findByIdInAndHubId(anyList(), eq(HUB))).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> !id.startsWith("foreign"))
+                    .map(id -> Sensor.builder().id(id).hubId(HUB).build())
+                    .toList();
+        });
+        when(scenarioRepository.save(any(Scenario.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void createsScenarioWithConditionsAndActions() {
+        when(scenarioRepository.findByHubIdAndName(HUB, "morning")).thenReturn(Optional.empty());
+
+        handler.handle(event(
+                List.of(conditionAvro("motion-1", ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, true)),
+                List.of(actionAvro("lamp-1", ActionTypeAvro.ACTIVATE, null))));
+
+        Scenario saved = savedScenario();
+        assertThat(saved.getConditions()).containsOnlyKeys("motion-1");
+        assertThat(saved.getConditions().get("motion-1").getValue()).isEqualTo(1);
+        assertThat(saved.getActions()).containsOnlyKeys("lamp-1");
+        assertThat(saved.getRules()).isNotNull();
+        verify(eventPublisher).publishEvent(new ScenarioRulesChangedEvent(HUB));
+    }
+
+    @Test
+    void mergesConditionsIntoStoredRows() {
+        Condition unchanged = storedCondition(1L, ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1);
+        Condition changed = storedCondition(2L, ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.GREATER_THAN, 20);
+        Condition removed = storedCondition(3L, ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.LOWER_THAN, 100);
+        Scenario scenario = storedScenario(
+                Map.of("motion-1", unchanged, "climate-1", changed, "light-1", removed),
+                Map.of("lamp-1", storedAction(10L, ActionTypeAvro.ACTIVATE, null)));
+
+        handler.handle(event(
+                List.of(conditionAvro("motion-1", ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1),
+                        conditionAvro("climate-1", ConditionTypeAvro.HUMIDITY, ConditionOperationAvro.LOWER_THAN, 60),
+                        conditionAvro("switch-1", ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, false)),
+                List.of(actionAvro("lamp-1", ActionTypeAvro.ACTIVATE, null))));
+
+        Map<String, Condition> conditions = savedScenario().getConditions();
+        assertThat(conditions).containsOnlyKeys("motion-1", "climate-1", "switch-1");
+        // Неизменённое и изменённое условия остаются теми же строками
+        assertThat(conditions.get("motion-1")).isSameAs(unchanged);
+        assertThat(unchanged.getId()).isEqualTo(1L);
+        assertThat(unchanged.getType()).isEqualTo(ConditionTypeAvro.MOTION);
+        assertThat(conditions.get("climate-1")).isSameAs(changed);
+        assertThat(changed.getId()).isEqualTo(2L);
+        assertThat(changed.getType()).isEqualTo(ConditionTypeAvro.HUMIDITY);
+        assertThat(changed.getOperation()).isEqualTo(ConditionOperationAvro.LOWER_THAN);
+        assertThat(changed.getValue()).isEqualTo(60);
+        assertThat(conditions.get("switch-1").getId()).isNull();
+        assertThat(conditions.get("switch-1").getValue()).isZero();
+        assertThat(scenario.getRules()).isEqualTo(rulesCodec.encode(conditions, scenario.getActions()));
+        verify(eventPublisher).publishEvent(new ScenarioRulesChangedEvent(HUB));
+    }
+
+    @Test
+    void mergesActionsIntoStoredRows() {
+        Action unchanged = storedAction(10L, ActionTypeAvro.ACTIVATE, null);
+        Action changed = storedAction(11L, ActionTypeAvro.SET_VALUE, 18);
+        Action removed = storedAction(12L, ActionTypeAvro.INVERSE, null);
+        storedScenario(
+                Map.of("motion-1", storedCondition(1L, ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1)),
+                Map.of("lamp-1", unchanged, "heater-1", changed, "fan-1", removed));
+
+        handler.handle(event(
+                List.of(conditionAvro("motion-1", ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1)),
+                List.of(actionAvro("lamp-1", ActionTypeAvro.ACTIVATE, null),
+                        actionAvro("heater-1", ActionTypeAvro.SET_VALUE, 22),
+                        actionAvro("blinds-1", ActionTypeAvro.DEACTIVATE, null))));
+
+        Map<String, Action> actions = savedScenario().getActions();
+        assertThat(actions).containsOnlyKeys("lamp-1", "heater-1", "blinds-1");
+        assertThat(actions.get("lamp-1")).isSameAs(unchanged);
+        assertThat(unchanged.getType()).isEqualTo(ActionTypeAvro.ACTIVATE);
+        assertThat(actions.get("heater-1")).isSameAs(changed);
+        assertThat(changed.getId()).isEqualTo(11L);
+        assertThat(changed.getValue()).isEqualTo(22);
+        assertThat(actions.get("blinds-1").getId()).isNull();
+        assertThat(actions.get("blinds-1").getType()).isEqualTo(ActionTypeAvro.DEACTIVATE);
+    }
+
+    @Test
+    void unchangedScenarioIsNotSavedOrInvalidated() {
+        Condition condition = storedCondition(1L, ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1);
+        Action action = storedAction(10L, ActionTypeAvro.ACTIVATE, null);
+        Scenario scenario = storedScenario(Map.of("motion-1", condition), Map.of("lamp-1", action));
+        scenario.setRules(rulesCodec.encode(
+                Map.of("motion-1", Condition.builder()
+                        .type(ConditionTypeAvro.MOTION).operation(ConditionOperationAvro.EQUALS).value(1).build()),
+                Map.of("lamp-1", Action.builder().type(ActionTypeAvro.ACTIVATE).build())));
+
+        handler.handle(event(
+                List.of(conditionAvro("motion-1", ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, true)),
+                List.of(actionAvro("lamp-1", ActionTypeAvro.ACTIVATE, null))));
+
+        verify(scenarioRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+        assertThat(scenario.getConditions()).containsExactly(Map.entry("motion-1", condition));
+        assertThat(scenario.getActions()).containsExactly(Map.entry("lamp-1", action));
+    }
+
+    @Test
+    void ignoresSensorsOfOtherHubs() {
+        when(scenarioRepository.findByHubIdAndName(HUB, "morning")).thenReturn(Optional.empty());
+
+        handler.handle(event(
+                List.of(conditionAvro("motion-1", ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, true),
+                        conditionAvro("foreign-1", ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, true)),
+                List.of(actionAvro("foreign-2", ActionTypeAvro.ACTIVATE, null))));
+
+        Scenario saved = savedScenario();
+        assertThat(saved.getConditions()).containsOnlyKeys("motion-1");
+        assertThat(saved.getActions()).isEmpty();
+    }
+
+    private Scenario storedScenario(Map<String, Condition> conditions, Map<String, Action> actions) {
+        Scenario scenario = Scenario.builder()
+                .id(100L)
+                .hubId(HUB)
+                .name("morning")
+                .conditions(new HashMap<>(conditions))
+                .actions(new HashMap<>(actions))
+                .rules(new byte[]{1})
+                .build();
+        when(scenarioRepository.findByHubIdAndName(HUB, "morning")).thenReturn(Optional.of(scenario));
+        return scenario;
+    }
+
+    // Последний сохранённый сценарий: при создании save вызывается дважды, второй раз - с правилами
+    private Scenario savedScenario() {
+        ArgumentCaptor<Scenario> captor = ArgumentCaptor.forClass(Scenario.class);
+        verify(scenarioRepository, atLeastOnce()).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static Condition storedCondition(Long id, ConditionTypeAvro type, ConditionOperationAvro operation,
+                                             Integer value) {
+        return Condition.builder().id(id).type(type).operation(operation).value(value).build();
+    }
+
+    private static Action storedAction(Long id, ActionTypeAvro type, Integer value) {
+        return Action.builder().id(id).type(type).value(value).build();
+    }
+
+    private static ScenarioConditionAvro conditionAvro(String sensorId, ConditionTypeAvro type,
+                                                       ConditionOperationAvro operation, Object value) {
+        return new ScenarioConditionAvro(sensorId, type, operation, value);
+    }
+
+    private static DeviceActionAvro actionAvro(String sensorId, ActionTypeAvro type, Integer value) {
+        return new DeviceActionAvro(sensorId, type, value);
+    }
+
+    private static HubEventAvro event(List<ScenarioConditionAvro> conditions, List<DeviceActionAvro> actions) {
+        return new HubEventAvro(HUB, Instant.ofEpochMilli(1_700_000_000_000L),
+                new ScenarioAddedEventAvro("morning", conditions, actions));
+    }
+}
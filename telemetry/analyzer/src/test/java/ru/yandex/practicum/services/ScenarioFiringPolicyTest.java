@@ -0,0 +1,113 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.config.AnalyzerProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScenarioFiringPolicyTest {
+
+    private static final String HUB = "hub-1";
+
+    @Test
+    void levelModeFiresOnEverySnapshotWithMetConditions() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.LEVEL, Duration.ZERO);
+        HubRules rules = rules("lights");
+
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 1)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, false, 2)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 3)).isTrue();
+    }
+
+    @Test
+    void edgeModeFiresOnlyWhenConditionsBecomeMet() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.EDGE, Duration.ZERO);
+        HubRules rules = rules("lights");
+
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 1)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 0, false, 2)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 3)).isTrue();
+    }
+
+    @Test
+    void edgeSuppressedByRefireIntervalFiresAfterIt() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.EDGE, Duration.ofMillis(100));
+        HubRules rules = rules("lights");
+
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, false, 10)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 20)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 100)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 300)).isFalse();
+    }
+
+    @Test
+    void scenarioRefireIntervalOverridesGlobalOne() {
+        AnalyzerProperties properties = properties(AnalyzerProperties.FiringMode.LEVEL, Duration.ofMillis(100));
+        properties.getFiring().setScenarioRefireIntervals(Map.of("alarm", Duration.ZERO));
+        ScenarioFiringPolicy policy = new ScenarioFiringPolicy(properties);
+        HubRules rules = rules("lights", "alarm");
+
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 1, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 50)).isFalse();
+        assertThat(policy.shouldFire(HUB, rules, 1, true, 50)).isTrue();
+    }
+
+    @Test
+    void reloadKeepsStateOfScenariosByName() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.EDGE, Duration.ZERO);
+        HubRules before = rules("lights", "heating");
+        assertThat(policy.shouldFire(HUB, before, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire(HUB, before, 1, true, 0)).isTrue();
+
+        // Сценарии перезагружены: другой порядок, heating удалён, добавлен alarm
+        HubRules after = rules("alarm", "lights");
+        assertThat(policy.shouldFire(HUB, after, 1, true, 1)).isFalse();
+        assertThat(policy.shouldFire(HUB, after, 0, true, 1)).isTrue();
+    }
+
+    @Test
+    void reloadKeepsRefireIntervalOfScenario() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.LEVEL, Duration.ofMillis(100));
+        assertThat(policy.shouldFire(HUB, rules("lights"), 0, true, 0)).isTrue();
+
+        HubRules after = rules("heating", "lights");
+        assertThat(policy.shouldFire(HUB, after, 1, true, 50)).isFalse();
+        assertThat(policy.shouldFire(HUB, after, 1, true, 100)).isTrue();
+    }
+
+    @Test
+    void hubsHaveSeparateState() {
+        ScenarioFiringPolicy policy = policy(AnalyzerProperties.FiringMode.EDGE, Duration.ZERO);
+        HubRules rules = rules("lights");
+
+        assertThat(policy.shouldFire(HUB, rules, 0, true, 0)).isTrue();
+        assertThat(policy.shouldFire("hub-2", rules, 0, true, 0)).isTrue();
+    }
+
+    private static ScenarioFiringPolicy policy(AnalyzerProperties.FiringMode mode, Duration minRefireInterval) {
+        return new ScenarioFiringPolicy(properties(mode, minRefireInterval));
+    }
+
+    private static AnalyzerProperties properties(AnalyzerProperties.FiringMode mode, Duration minRefireInterval) {
+        AnalyzerProperties properties = new AnalyzerProperties();
+        properties.getFiring().setMode(mode);
+        properties.getFiring().setMinRefireInterval(minRefireInterval);
+        return properties;
+    }
+
+    private static HubRules rules(String... names) {
+        List<ScenarioRule> scenarios = Arrays.stream(names)
+                .map(name -> new ScenarioRule(HUB, name, List.of(), Map.of()))
+                .toList();
+        return HubRules.of(scenarios);
+    }
+}
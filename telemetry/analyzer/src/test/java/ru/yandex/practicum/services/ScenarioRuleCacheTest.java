@@ -0,0 +1,74 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.config.AnalyzerProperties;
+import ru.yandex.practicum.model.Scenario;
+import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.repository.SensorRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScenarioRuleCacheTest {
+
+    private final ScenarioRepository scenarioRepository = mock(ScenarioRepository.class);
+    private ScenarioRuleCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ScenarioRuleCache(scenarioRepository, mock(SensorRepository.class),
+                mock(PlatformTransactionManager.class),
+                new ConditionCompiler(), new ScenarioRulesCodec(), new AnalyzerProperties());
+    }
+
+    @Test
+    void loadsRulesOnceUntilInvalidated() {
+        when(scenarioRepository.findByHubId("hub-1")).thenReturn(List.of(scenario("morning")));
+
+        cache.getRules("hub-1");
+        cache.getRules("hub-1");
+        verify(scenarioRepository, times(1)).findByHubId("hub-1");
+
+        cache.onScenarioRulesChanged(new ScenarioRulesChangedEvent("hub-1"));
+        cache.getRules("hub-1");
+        verify(scenarioRepository, times(2)).findByHubId("hub-1");
+    }
+
+    @Test
+    void loadStartedBeforeInvalidationIsNotCached() {
+        // Сценарии хаба меняются, пока первая загрузка читает прежние
+        when(scenarioRepository.findByHubId("hub-1"))
+                .thenAnswer(invocation -> {
+                    cache.onScenarioRulesChanged(new ScenarioRulesChangedEvent("hub-1"));
+                    return List.of(scenario("stale"));
+                })
+                .thenReturn(List.of(scenario("fresh")));
+
+        assertThat(cache.getRules("hub-1").scenarios()).extracting(ScenarioRule::name).containsExactly("stale");
+        assertThat(cache.getRules("hub-1").scenarios()).extracting(ScenarioRule::name).containsExactly("fresh");
+        assertThat(cache.getRules("hub-1").scenarios()).extracting(ScenarioRule::name).containsExactly("fresh");
+        verify(scenarioRepository, times(2)).findByHubId("hub-1");
+    }
+
+    @Test
+    void invalidationOfOtherHubKeepsCachedRules() {
+        when(scenarioRepository.findByHubId("hub-1")).thenReturn(List.of(scenario("morning")));
+
+        cache.getRules("hub-1");
+        cache.onScenarioRulesChanged(new ScenarioRulesChangedEvent("hub-2"));
+        cache.getRules("hub-1");
+
+        verify(scenarioRepository, times(1)).findByHubId("hub-1");
+    }
+
+    private static Scenario scenario(String name) {
+        return Scenario.builder().hubId("hub-1").name(name).build();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.services;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.model.Condition;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScenarioRulesCodecTest {
+
+    private final ScenarioRulesCodec codec = new ScenarioRulesCodec();
+
+    @Test
+    void roundTripsEveryConditionAndActionType() {
+        Map<String, Condition> conditions = new HashMap<>();
+        ConditionOperationAvro[] operations = ConditionOperationAvro.values();
+        ConditionTypeAvro[] types = ConditionTypeAvro.values();
+        for (int i = 0; i < types.length; i++) {
+            conditions.put("condition-sensor-" + i, condition(types[i], operations[i % operations.length], i - 2));
+        }
+        Map<String, Action> actions = new HashMap<>();
+        for (ActionTypeAvro type : ActionTypeAvro.values()) {
+            actions.put("action-sensor-" + type, action(type, type == ActionTypeAvro.SET_VALUE ? 22 : null));
+        }
+
+        ScenarioRulesCodec.DecodedRules decoded = codec.decode(codec.encode(conditions, actions));
+
+        assertThat(decoded.conditions()).isEqualTo(conditions);
+        assertThat(decoded.actions()).isEqualTo(actions);
+    }
+
+    @Test
+    void roundTripsNullFieldsAndExtremeValues() {
+        Map<String, Condition> conditions = Map.of(
+                "sensor-1", condition(null, null, null),
+                "sensor-2", condition(ConditionTypeAvro.TEMPERATURE, ConditionOperationAvro.LOWER_THAN,
+                        Integer.MIN_VALUE),
+                "sensor-3", condition(ConditionTypeAvro.CO2LEVEL, ConditionOperationAvro.GREATER_THAN,
+                        Integer.MAX_VALUE));
+        Map<String, Action> actions = Map.of(
+                "sensor-1", action(null, null),
+                "sensor-4", action(ActionTypeAvro.SET_VALUE, 0));
+
+        ScenarioRulesCodec.DecodedRules decoded = codec.decode(codec.encode(conditions, actions));
+
+        assertThat(decoded.conditions()).isEqualTo(conditions);
+        assertThat(decoded.actions()).isEqualTo(actions);
+    }
+
+    @Test
+    void roundTripsEmptyRules() {
+        ScenarioRulesCodec.DecodedRules decoded = codec.decode(codec.encode(Map.of(), Map.of()));
+
+        assertThat(decoded.conditions()).isEmpty();
+        assertThat(decoded.actions()).isEmpty();
+    }
+
+    @Test
+    void encodingDoesNotDependOnMapOrder() {
+        Map<String, Condition> forward = new LinkedHashMap<>();
+        forward.put("a", condition(ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, 1));
+        forward.put("b", condition(ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, 0));
+        Map<String, Condition> backward = new LinkedHashMap<>();
+        backward.put("b", forward.get("b"));
+        backward.put("a", forward.get("a"));
+
+        assertThat(codec.encode(forward, Map.of())).isEqualTo(codec.encode(backward, Map.of()));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] encoded = codec.encode(Map.of(), Map.of());
+        encoded[0] = 2;
+
+        assertThatThrownBy(() -> codec.decode(encoded))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unsupported scenario rules version: 2");
+    }
+
+    private static Condition condition(ConditionTypeAvro type, ConditionOperationAvro operation, Integer value) {
+        return Condition.builder().type(type).operation(operation).value(value).build();
+    }
+
+    private static Action action(ActionTypeAvro type, Integer value) {
+        return Action.builder().type(type).value(value).build();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.mapper;
+
+import com.google.protobuf.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.model.sensor.ClimateSensorEvent;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Преобразование события gRPC в Avro: через модель REST и билдеры Avro (как было в gRPC-обработчиках)
+// и напрямую конструкторами Avro (SensorEventProtoMapper)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorEventMappingBenchmark {
+
+    private final SensorEventMapper sensorEventMapper = new SensorEventMapper();
+    private final SensorEventProtoMapper sensorEventProtoMapper = new SensorEventProtoMapper();
+
+    private final SensorEventProto proto = SensorEventProto.newBuilder()
+            .setId("climate-sensor-1")
+            .setHubId("hub-1")
+            .setTimestamp(Timestamp.newBuilder().setSeconds(1_700_000_000L).setNanos(123_000_000))
+            .setClimateSensorEvent(ClimateSensorProto.newBuilder()
+                    .setTemperatureC(21)
+                    .setHumidity(45)
+                    .setCo2Level(600))
+            .build();
+
+    @Benchmark
+    public SensorEventAvro viaModel() {
+        ClimateSensorProto climate = proto.getClimateSensorEvent();
+        ClimateSensorEvent event = new ClimateSensorEvent();
+        event.setId(proto.getId());
+        event.setHubId(proto.getHubId());
+        event.setTimestamp(Instant.ofEpochSecond(proto.getTimestamp().getSeconds(), proto.getTimestamp().getNanos()));
+        event.setTemperatureC(climate.getTemperatureC());
+        event.setHumidity(climate.getHumidity());
+        event.setCo2Level(climate.getCo2Level());
+        return sensorEventMapper.toSensorEventAvro(event);
+    }
+
+    @Benchmark
+    public SensorEventAvro direct() {
+        return sensorEventProtoMapper.toSensorEventAvro(proto);
+    }
+}
@@ -23,7 +23,7 @@ public class KafkaProducerConfig {
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
                 "org.apache.kafka.common.serialization.StringSerializer");
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                "ru.yandex.practicum.serializer.GeneralAvroSerializer");
+                "ru.yandex.practicum.kafka.telemetry.serialization.AvroSerializer");
 
         return new KafkaProducer<>(config);
     }
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "collector.sensor-batch")
+public class SensorBatchProperties {
+    // Больше событий в одном CollectSensorEventBatch не принимается: все они держатся в памяти до ответа
+    private int maxEvents = 1000;
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "collector.sensor-stream")
+public class SensorStreamProperties {
+    // Сколько событий потока может ожидать подтверждения от Kafka одновременно
+    private int window = 256;
+    private int ackBatchSize = 64;
+    private long ackIntervalMs = 1000;
+}
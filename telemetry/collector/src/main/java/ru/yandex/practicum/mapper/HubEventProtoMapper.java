@@ -0,0 +1,91 @@
+package ru.yandex.practicum.mapper;
+
+import org.apache.avro.specific.SpecificRecordBase;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceAddedEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.ScenarioAddedEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.ScenarioConditionProto;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Прямое преобразование gRPC -> Avro без промежуточной модели, используется gRPC-контроллером
+@Component
+public class HubEventProtoMapper {
+
+    public HubEventAvro toHubEventAvro(HubEventProto proto) {
+        return new HubEventAvro(
+                proto.getHubId(),
+                SensorEventProtoMapper.toInstant(proto.getTimestamp()),
+                toHubEventPayloadAvro(proto)
+        );
+    }
+
+    private SpecificRecordBase toHubEventPayloadAvro(HubEventProto proto) {
+        switch (proto.getPayloadCase()) {
+            case DEVICE_ADDED -> {
+                DeviceAddedEventProto event = proto.getDeviceAdded();
+                return new DeviceAddedEventAvro(event.getId(), DeviceTypeAvro.valueOf(event.getType().name()));
+            }
+
+            case DEVICE_REMOVED -> {
+                return new DeviceRemovedEventAvro(proto.getDeviceRemoved().getId());
+            }
+
+            case SCENARIO_ADDED -> {
+                ScenarioAddedEventProto event = proto.getScenarioAdded();
+                List<ScenarioConditionAvro> conditions = new ArrayList<>(event.getConditionCount());
+                for (ScenarioConditionProto condition : event.getConditionList()) {
+                    conditions.add(toScenarioConditionAvro(condition));
+                }
+                List<DeviceActionAvro> actions = new ArrayList<>(event.getActionCount());
+                for (DeviceActionProto action : event.getActionList()) {
+                    actions.add(toDeviceActionAvro(action));
+                }
+                return new ScenarioAddedEventAvro(event.getName(), conditions, actions);
+            }
+
+            case SCENARIO_REMOVED -> {
+                return new ScenarioRemovedEventAvro(proto.getScenarioRemoved().getName());
+            }
+
+            default -> throw new IllegalStateException("Invalid payload");
+        }
+    }
+
+    private ScenarioConditionAvro toScenarioConditionAvro(ScenarioConditionProto proto) {
+        Object value = switch (proto.getValueCase()) {
+            case BOOL_VALUE -> proto.getBoolValue();
+            case INT_VALUE -> proto.getIntValue();
+            case VALUE_NOT_SET -> null;
+        };
+
+        return new ScenarioConditionAvro(
+                proto.getSensorId(),
+                ConditionTypeAvro.valueOf(proto.getType().name()),
+                ConditionOperationAvro.valueOf(proto.getOperation().name()),
+                value
+        );
+    }
+
+    private DeviceActionAvro toDeviceActionAvro(DeviceActionProto proto) {
+        return new DeviceActionAvro(
+                proto.getSensorId(),
+                ActionTypeAvro.valueOf(proto.getType().name()),
+                proto.hasValue() ? proto.getValue() : null
+        );
+    }
+}
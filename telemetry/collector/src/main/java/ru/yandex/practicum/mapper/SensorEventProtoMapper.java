@@ -0,0 +1,69 @@
+package ru.yandex.practicum.mapper;
+
+import com.google.protobuf.Timestamp;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Instant;
+
+// Прямое преобразование gRPC -> Avro без промежуточной модели, используется gRPC-контроллером.
+// Записи создаются конструкторами: билдеры Avro дополнительно валидируют и копируют каждое поле.
+@Component
+public class SensorEventProtoMapper {
+
+    public SensorEventAvro toSensorEventAvro(SensorEventProto proto) {
+        return new SensorEventAvro(
+                proto.getId(),
+                proto.getHubId(),
+                toInstant(proto.getTimestamp()),
+                toSensorEventPayloadAvro(proto)
+        );
+    }
+
+    public SpecificRecordBase toSensorEventPayloadAvro(SensorEventProto proto) {
+        switch (proto.getPayloadCase()) {
+            case CLIMATE_SENSOR_EVENT -> {
+                ClimateSensorProto event = proto.getClimateSensorEvent();
+                return new ClimateSensorAvro(event.getTemperatureC(), event.getHumidity(), event.getCo2Level());
+            }
+
+            case LIGHT_SENSOR_EVENT -> {
+                LightSensorProto event = proto.getLightSensorEvent();
+                return new LightSensorAvro(event.getLinkQuality(), event.getLuminosity());
+            }
+
+            case MOTION_SENSOR_EVENT -> {
+                MotionSensorProto event = proto.getMotionSensorEvent();
+                return new MotionSensorAvro(event.getLinkQuality(), event.getMotion(), event.getVoltage());
+            }
+
+            case SWITCH_SENSOR_EVENT -> {
+                SwitchSensorProto event = proto.getSwitchSensorEvent();
+                return new SwitchSensorAvro(event.getState());
+            }
+
+            case TEMPERATURE_SENSOR_EVENT -> {
+                TemperatureSensorProto event = proto.getTemperatureSensorEvent();
+                return new TemperatureSensorAvro(event.getTemperatureC(), event.getTemperatureF());
+            }
+
+            default -> throw new IllegalStateException("Invalid payload");
+        }
+    }
+
+    static Instant toInstant(Timestamp timestamp) {
+        return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+    }
+}
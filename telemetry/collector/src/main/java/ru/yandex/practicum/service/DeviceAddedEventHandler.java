@@ -4,12 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
-import ru.yandex.practicum.grpc.telemetry.event.DeviceTypeProto;
-import ru.yandex.practicum.model.hub.HubEvent;
-import ru.yandex.practicum.model.hub.DeviceAddedEvent;
-import ru.yandex.practicum.model.hub.DeviceType;
-
-import java.time.Instant;
+import ru.yandex.practicum.mapper.HubEventProtoMapper;
 
 @Slf4j
 @Component
@@ -17,6 +12,7 @@ import java.time.Instant;
 public class DeviceAddedEventHandler implements HubEventHandler {
 
     private final EventService eventService;
+    private final HubEventProtoMapper hubEventProtoMapper;
 
     @Override
     public HubEventProto.PayloadCase getMessageType() {
@@ -27,24 +23,6 @@ public class DeviceAddedEventHandler implements HubEventHandler {
     public void handle(HubEventProto event) {
         log.info("Processing device added event for hub: {}", event.getHubId());
 
-        var deviceAdded = event.getDeviceAdded();
-        var hubEvent = new DeviceAddedEvent();
-        setCommonHubFields(hubEvent, event);
-        hubEvent.setId(deviceAdded.getId());
-        hubEvent.setDeviceType(toDeviceType(deviceAdded.getType()));
-
-        eventService.collectHubEvent(hubEvent);
-    }
-
-    private void setCommonHubFields(HubEvent event, HubEventProto proto) {
-        event.setHubId(proto.getHubId());
-        event.setTimestamp(Instant.ofEpochSecond(
-                proto.getTimestamp().getSeconds(),
-                proto.getTimestamp().getNanos()
-        ));
-    }
-
-    private DeviceType toDeviceType(DeviceTypeProto protoType) {
-        return DeviceType.valueOf(protoType.name());
+        eventService.collectHubEvent(hubEventProtoMapper.toHubEventAvro(event));
     }
 }
@@ -4,10 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
-import ru.yandex.practicum.model.hub.HubEvent;
-import ru.yandex.practicum.model.hub.DeviceRemovedEvent;
-
-import java.time.Instant;
+import ru.yandex.practicum.mapper.HubEventProtoMapper;
 
 @Slf4j
 @Component
@@ -15,6 +12,7 @@ import java.time.Instant;
 public class DeviceRemovedEventHandler implements HubEventHandler {
 
     private final EventService eventService;
+    private final HubEventProtoMapper hubEventProtoMapper;
 
     @Override
     public HubEventProto.PayloadCase getMessageType() {
@@ -25,20 +23,6 @@ public class DeviceRemovedEventHandler implements HubEventHandler {
     public void handle(HubEventProto event) {
         log.info("Processing device removed event for hub: {}", event.getHubId());
 
-        var deviceRemoved = event.getDeviceRemoved();
-        var hubEvent = new DeviceRemovedEvent();
-
-        setCommonHubFields(hubEvent, event);
-        hubEvent.setId(deviceRemoved.getId());
-
-        eventService.collectHubEvent(hubEvent);
-    }
-
-    private void setCommonHubFields(HubEvent event, HubEventProto proto) {
-        event.setHubId(proto.getHubId());
-        event.setTimestamp(Instant.ofEpochSecond(
-                proto.getTimestamp().getSeconds(),
-                proto.getTimestamp().getNanos()
-        ));
+        eventService.collectHubEvent(hubEventProtoMapper.toHubEventAvro(event));
     }
 }
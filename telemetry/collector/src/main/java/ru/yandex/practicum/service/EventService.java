@@ -1,10 +1,19 @@
 package ru.yandex.practicum.service;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.model.hub.HubEvent;
 import ru.yandex.practicum.model.sensor.SensorEvent;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface EventService {
-    void collectSensorEvent(SensorEvent event);
+    CompletableFuture<RecordMetadata> collectSensorEvent(SensorEvent event);
+
+    CompletableFuture<RecordMetadata> collectSensorEvent(SensorEventAvro event);
 
     void collectHubEvent(HubEvent event);
+
+    void collectHubEvent(HubEventAvro event);
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.mapper.HubEventMapper;
 import ru.yandex.practicum.mapper.SensorEventMapper;
@@ -12,6 +13,8 @@ import ru.yandex.practicum.model.sensor.SensorEvent;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
@@ -19,23 +22,41 @@ public class EventServiceImpl implements EventService {
     private final HubEventMapper hubEventMapper;
     private final Producer<String, SpecificRecordBase> producer;
 
-    public void collectSensorEvent(SensorEvent event) {
+    public CompletableFuture<RecordMetadata> collectSensorEvent(SensorEvent event) {
+        return collectSensorEvent(sensorEventMapper.toSensorEventAvro(event));
+    }
+
+    public CompletableFuture<RecordMetadata> collectSensorEvent(SensorEventAvro message) {
         String topic = "telemetry.sensors.v1";
-        SensorEventAvro message = sensorEventMapper.toSensorEventAvro(event);
         String hubId = message.getHubId();
         Long timestamp = message.getTimestamp().toEpochMilli();
         ProducerRecord<String, SpecificRecordBase> record =
                 new ProducerRecord<>(topic, null, timestamp, hubId, message);
-        producer.send(record);
+        return send(record);
     }
 
     public void collectHubEvent(HubEvent event) {
+        collectHubEvent(hubEventMapper.toHubEventAvro(event));
+    }
+
+    public void collectHubEvent(HubEventAvro message) {
         String topic = "telemetry.hubs.v1";
-        HubEventAvro message = hubEventMapper.toHubEventAvro(event);
         String hubId = message.getHubId();
         Long timestamp = message.getTimestamp().toEpochMilli();
         ProducerRecord<String, SpecificRecordBase> record =
                 new ProducerRecord<>(topic, null, timestamp, hubId, message);
         producer.send(record);
     }
+
+    private CompletableFuture<RecordMetadata> send(ProducerRecord<String, SpecificRecordBase> record) {
+        CompletableFuture<RecordMetadata> result = new CompletableFuture<>();
+        producer.send(record, (metadata, exception) -> {
+            if (exception != null) {
+                result.completeExceptionally(exception);
+            } else {
+                result.complete(metadata);
+            }
+        });
+        return result;
+    }
 }
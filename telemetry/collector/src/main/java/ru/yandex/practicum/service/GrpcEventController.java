@@ -3,15 +3,29 @@ package ru.yandex.practicum.service;
 import com.google.protobuf.Empty;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import ru.yandex.practicum.config.SensorBatchProperties;
+import ru.yandex.practicum.config.SensorStreamProperties;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventBatchRequest;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventBatchResponse;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventItemStatus;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventStreamAck;
 import ru.yandex.practicum.grpc.telemetry.service.CollectorControllerGrpc;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -21,10 +35,20 @@ public class GrpcEventController extends CollectorControllerGrpc.CollectorContro
 
     private final Map<SensorEventProto.PayloadCase, SensorEventHandler> sensorEventHandlers;
     private final Map<HubEventProto.PayloadCase, HubEventHandler> hubEventHandlers;
+    private final SensorStreamProperties sensorStreamProperties;
+    private final SensorBatchProperties sensorBatchProperties;
+    // Общий для всех потоков StreamSensorEvents таймер отправки подтверждений
+    private final ScheduledExecutorService ackScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sensor-stream-ack");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // ИЗМЕНЕНИЕ: Добавляем Set<HubEventHandler> в конструктор
     public GrpcEventController(Set<SensorEventHandler> sensorEventHandlers,
-                               Set<HubEventHandler> hubEventHandlers) {
+                               Set<HubEventHandler> hubEventHandlers,
+                               SensorStreamProperties sensorStreamProperties,
+                               SensorBatchProperties sensorBatchProperties) {
         this.sensorEventHandlers = sensorEventHandlers.stream()
                 .collect(Collectors.toMap(
                         SensorEventHandler::getMessageType,
@@ -35,6 +59,8 @@ public class GrpcEventController extends CollectorControllerGrpc.CollectorContro
                         HubEventHandler::getMessageType,
                         Function.identity()
                 ));
+        this.sensorStreamProperties = sensorStreamProperties;
+        this.sensorBatchProperties = sensorBatchProperties;
     }
 
     @Override
@@ -81,4 +107,82 @@ public class GrpcEventController extends CollectorControllerGrpc.CollectorContro
             ));
         }
     }
+
+    @Override
+    public void collectSensorEventBatch(SensorEventBatchRequest request,
+                                        StreamObserver<SensorEventBatchResponse> responseObserver) {
+        log.info("Received batch of {} sensor events", request.getEventCount());
+        if (request.getEventCount() > sensorBatchProperties.getMaxEvents()) {
+            log.warn("Rejected batch of {} sensor events, the limit is {}", request.getEventCount(),
+                    sensorBatchProperties.getMaxEvents());
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Batch has " + request.getEventCount() + " events, the limit is "
+                            + sensorBatchProperties.getMaxEvents())
+                    .asRuntimeException());
+            return;
+        }
+
+        // События не образуют одну логическую пачку: каждое пишется отдельной записью и может быть
+        // принято или отклонено независимо от остальных. Все события отправляются в продюсер за один проход и уходят в Kafka общими пачками,
+        // ответ формируется, когда по каждому событию известен результат записи
+        List<CompletableFuture<RecordMetadata>> results = new ArrayList<>(request.getEventCount());
+        for (SensorEventProto event : request.getEventList()) {
+            results.add(dispatchSensorEvent(event));
+        }
+
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            SensorEventBatchResponse.Builder response = SensorEventBatchResponse.newBuilder();
+            int rejected = 0;
+            for (CompletableFuture<RecordMetadata> result : results) {
+                SensorEventItemStatus status = result.handle(this::toItemStatus).join();
+                if (!status.getAccepted()) {
+                    rejected++;
+                }
+                response.addStatus(status);
+            }
+            if (rejected > 0) {
+                log.warn("Rejected {} of {} sensor events in batch", rejected, results.size());
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ackScheduler.shutdownNow();
+    }
+
+    @Override
+    public StreamObserver<SensorEventProto> streamSensorEvents(StreamObserver<SensorEventStreamAck> responseObserver) {
+        log.info("Opened sensor event stream");
+        return new SensorEventStreamObserver(
+                (ServerCallStreamObserver<SensorEventStreamAck>) responseObserver,
+                sensorEventHandlers,
+                sensorStreamProperties,
+                ackScheduler
+        );
+    }
+
+    private CompletableFuture<RecordMetadata> dispatchSensorEvent(SensorEventProto event) {
+        try {
+            SensorEventHandler handler = sensorEventHandlers.get(event.getPayloadCase());
+            if (handler == null) {
+                throw new IllegalArgumentException("Cannot find handler for event type: " + event.getPayloadCase());
+            }
+            return handler.handle(event);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private SensorEventItemStatus toItemStatus(RecordMetadata metadata, Throwable exception) {
+        if (exception == null) {
+            return SensorEventItemStatus.newBuilder().setAccepted(true).build();
+        }
+        return SensorEventItemStatus.newBuilder()
+                .setAccepted(false)
+                .setError(String.valueOf(exception.getLocalizedMessage()))
+                .build();
+    }
 }
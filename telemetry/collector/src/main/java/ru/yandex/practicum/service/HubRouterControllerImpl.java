@@ -33,4 +33,34 @@ public class HubRouterControllerImpl extends HubRouterControllerGrpc.HubRouterCo
             ));
         }
     }
+
+    @Override
+    public StreamObserver<DeviceActionRequest> streamDeviceActions(StreamObserver<Empty> responseObserver) {
+        return new StreamObserver<>() {
+            private long received;
+
+            @Override
+            public void onNext(DeviceActionRequest request) {
+                received++;
+                log.info("Received streamed device action for hub: {}, sensor: {}, scenario: {}, type: {}, value: {}",
+                        request.getHubId(),
+                        request.getAction().getSensorId(),
+                        request.getScenarioName(),
+                        request.getAction().getType(),
+                        request.getAction().getValue());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Device action stream failed after {} actions", received, t);
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("Device action stream completed, {} actions received", received);
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -4,10 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
-import ru.yandex.practicum.model.hub.HubEvent;
-import ru.yandex.practicum.model.hub.ScenarioRemovedEvent;
-
-import java.time.Instant;
+import ru.yandex.practicum.mapper.HubEventProtoMapper;
 
 @Slf4j
 @Component
@@ -15,6 +12,7 @@ import java.time.Instant;
 public class ScenarioRemovedEventHandler implements HubEventHandler {
 
     private final EventService eventService;
+    private final HubEventProtoMapper hubEventProtoMapper;
 
     @Override
     public HubEventProto.PayloadCase getMessageType() {
@@ -25,20 +23,6 @@ public class ScenarioRemovedEventHandler implements HubEventHandler {
     public void handle(HubEventProto event) {
         log.info("Processing scenario removed event for hub: {}", event.getHubId());
 
-        var scenarioRemoved = event.getScenarioRemoved();
-        var hubEvent = new ScenarioRemovedEvent();
-
-        setCommonHubFields(hubEvent, event);
-        hubEvent.setName(scenarioRemoved.getName());
-
-        eventService.collectHubEvent(hubEvent);
-    }
-
-    private void setCommonHubFields(HubEvent event, HubEventProto proto) {
-        event.setHubId(proto.getHubId());
-        event.setTimestamp(Instant.ofEpochSecond(
-                proto.getTimestamp().getSeconds(),
-                proto.getTimestamp().getNanos()
-        ));
+        eventService.collectHubEvent(hubEventProtoMapper.toHubEventAvro(event));
     }
 }
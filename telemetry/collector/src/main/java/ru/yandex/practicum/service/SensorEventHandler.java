@@ -1,8 +1,11 @@
 package ru.yandex.practicum.service;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface SensorEventHandler {
     SensorEventProto.PayloadCase getMessageType();
-    void handle(SensorEventProto event);
+    CompletableFuture<RecordMetadata> handle(SensorEventProto event);
 }
@@ -0,0 +1,188 @@
+package ru.yandex.practicum.service;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.config.SensorStreamProperties;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventStreamAck;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработчик одного потока StreamSensorEvents. Новые сообщения запрашиваются у клиента
+ * по мере подтверждения записи предыдущих в Kafka, поэтому в полёте не больше {@code window} событий.
+ */
+@Slf4j
+class SensorEventStreamObserver implements StreamObserver<SensorEventProto> {
+
+    private final ServerCallStreamObserver<SensorEventStreamAck> responseObserver;
+    private final Map<SensorEventProto.PayloadCase, SensorEventHandler> sensorEventHandlers;
+    private final SensorStreamProperties properties;
+
+    // Состояние ниже защищено монитором this: колбэки Kafka приходят из потока продюсера
+    private final Deque<PendingEvent> pending = new ArrayDeque<>();
+    private long receivedSequence;
+    private long durableSequence;
+    private long ackedSequence;
+    private long lastAckAt = System.currentTimeMillis();
+    private boolean halfClosed;
+    private boolean finished;
+    // Отправляет накопленное подтверждение, даже если новых событий больше нет
+    private final ScheduledFuture<?> ackFlush;
+
+    SensorEventStreamObserver(ServerCallStreamObserver<SensorEventStreamAck> responseObserver,
+                              Map<SensorEventProto.PayloadCase, SensorEventHandler> sensorEventHandlers,
+                              SensorStreamProperties properties,
+                              ScheduledExecutorService ackScheduler) {
+        this.responseObserver = responseObserver;
+        this.sensorEventHandlers = sensorEventHandlers;
+        this.properties = properties;
+
+        responseObserver.disableAutoRequest();
+        responseObserver.setOnCancelHandler(this::onCancel);
+        long interval = Math.max(1, properties.getAckIntervalMs());
+        this.ackFlush = ackScheduler.scheduleAtFixedRate(this::flushAck, interval, interval, TimeUnit.MILLISECONDS);
+        responseObserver.request(properties.getWindow());
+    }
+
+    @Override
+    public void onNext(SensorEventProto event) {
+        PendingEvent pendingEvent;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            pendingEvent = new PendingEvent(++receivedSequence);
+            pending.addLast(pendingEvent);
+        }
+
+        try {
+            SensorEventHandler handler = sensorEventHandlers.get(event.getPayloadCase());
+            if (handler == null) {
+                throw new IllegalArgumentException("Cannot find handler for event type: " + event.getPayloadCase());
+            }
+            handler.handle(event).whenComplete((metadata, exception) -> {
+                if (exception != null) {
+                    fail(exception);
+                } else {
+                    onProduced(pendingEvent);
+                }
+            });
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        synchronized (this) {
+            finish();
+        }
+        log.warn("Sensor event stream aborted by client after {} events", receivedSequence, t);
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        if (finished) {
+            return;
+        }
+        halfClosed = true;
+        if (pending.isEmpty()) {
+            complete();
+        }
+    }
+
+    private synchronized void onProduced(PendingEvent pendingEvent) {
+        if (finished) {
+            return;
+        }
+        pendingEvent.produced = true;
+
+        // Подтверждаем только непрерывный префикс потока: записи разных хабов
+        // могут быть подтверждены Kafka не в том порядке, в котором пришли
+        int released = 0;
+        while (!pending.isEmpty() && pending.peekFirst().produced) {
+            durableSequence = pending.pollFirst().sequence;
+            released++;
+        }
+        if (released == 0) {
+            return;
+        }
+
+        if (halfClosed && pending.isEmpty()) {
+            complete();
+            return;
+        }
+        responseObserver.request(released);
+        sendAck(false);
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (finished) {
+            return;
+        }
+        log.error("Error processing sensor event stream", e);
+        sendAck(true);
+        finish();
+        responseObserver.onError(new StatusRuntimeException(
+                Status.INTERNAL.withDescription(e.getLocalizedMessage()).withCause(e)
+        ));
+    }
+
+    private void complete() {
+        sendAck(true);
+        finish();
+        responseObserver.onCompleted();
+        log.info("Sensor event stream completed, {} events produced", durableSequence);
+    }
+
+    private synchronized void onCancel() {
+        finish();
+        log.info("Sensor event stream cancelled by client, {} of {} events produced",
+                durableSequence, receivedSequence);
+    }
+
+    private synchronized void flushAck() {
+        if (!finished) {
+            sendAck(true);
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        ackFlush.cancel(false);
+    }
+
+    private void sendAck(boolean force) {
+        if (durableSequence == ackedSequence) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (force
+                || durableSequence - ackedSequence >= properties.getAckBatchSize()
+                || now - lastAckAt >= properties.getAckIntervalMs()) {
+            responseObserver.onNext(SensorEventStreamAck.newBuilder()
+                    .setLastSequence(durableSequence)
+                    .build());
+            ackedSequence = durableSequence;
+            lastAckAt = now;
+        }
+    }
+
+    private static class PendingEvent {
+        private final long sequence;
+        private boolean produced;
+
+        private PendingEvent(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -2,8 +2,12 @@ package ru.yandex.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.mapper.SensorEventProtoMapper;
+
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
@@ -11,6 +15,7 @@ import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
 public class TemperatureSensorEventHandler implements SensorEventHandler {
 
     private final EventService eventService;
+    private final SensorEventProtoMapper sensorEventProtoMapper;
 
     @Override
     public SensorEventProto.PayloadCase getMessageType() {
@@ -18,24 +23,9 @@ public class TemperatureSensorEventHandler implements SensorEventHandler {
     }
 
     @Override
-    public void handle(SensorEventProto event) {
+    public CompletableFuture<RecordMetadata> handle(SensorEventProto event) {
         log.info("Processing temperature sensor event from device: {}", event.getId());
 
-        var tempSensor = event.getTemperatureSensorEvent();
-        var tempEvent = new ru.yandex.practicum.model.sensor.TemperatureSensorEvent();
-        setCommonSensorFields(tempEvent, event);
-        tempEvent.setTemperatureC(tempSensor.getTemperatureC());
-        tempEvent.setTemperatureF(tempSensor.getTemperatureF());
-
-        eventService.collectSensorEvent(tempEvent);
-    }
-
-    private void setCommonSensorFields(ru.yandex.practicum.model.sensor.SensorEvent event, SensorEventProto proto) {
-        event.setId(proto.getId());
-        event.setHubId(proto.getHubId());
-        event.setTimestamp(java.time.Instant.ofEpochSecond(
-                proto.getTimestamp().getSeconds(),
-                proto.getTimestamp().getNanos()
-        ));
+        return eventService.collectSensorEvent(sensorEventProtoMapper.toSensorEventAvro(event));
     }
 }
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.kafka.telemetry.serialization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Разбор снимка хаба без переиспользования, с переиспользованием BinaryDecoder и с переиспользованием
+// ещё и записей (REUSE_DECODER_CONFIG / REUSE_RECORDS_CONFIG)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class SnapshotDeserializationBenchmark {
+
+    @Param({"none", "decoder", "records"})
+    private String reuse;
+
+    @Param({"10", "100", "1000"})
+    private int sensors;
+
+    private SensorsSnapshotDeserializer deserializer;
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        Instant now = Instant.ofEpochMilli(1_700_000_000_000L);
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        for (int i = 0; i < sensors; i++) {
+            states.put("sensor-" + i, new SensorStateAvro(now, new ClimateSensorAvro(20 + i, 40, 600)));
+        }
+        data = new AvroSerializer().serialize("snapshots", new SensorsSnapshotAvro("hub-1", now, states));
+
+        deserializer = new SensorsSnapshotDeserializer();
+        deserializer.configure(Map.of(
+                BaseAvroDeserializer.REUSE_DECODER_CONFIG, !reuse.equals("none"),
+                BaseAvroDeserializer.REUSE_RECORDS_CONFIG, reuse.equals("records")
+        ), false);
+    }
+
+    @Benchmark
+    public SensorsSnapshotAvro deserialize() {
+        return deserializer.deserialize("snapshots", data);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.kafka.telemetry.serialization;
 
+import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
@@ -10,24 +11,58 @@ import org.apache.kafka.common.serialization.Serializer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AvroSerializer implements Serializer<SpecificRecordBase> {
 
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Буферы крупнее этого размера не удерживаются потоком после сериализации
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
     private final EncoderFactory encoderFactory = EncoderFactory.get();
 
+    // SpecificDatumWriter не хранит состояния между вызовами write, поэтому достаточно одного на схему
+    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new ConcurrentHashMap<>();
+
+    // Продюсер Kafka сериализует запись в потоке, вызвавшем send(), поэтому буфер и энкодер у каждого потока свои
+    private final ThreadLocal<EncoderState> encoderState = ThreadLocal.withInitial(EncoderState::new);
+
     @Override
     public byte[] serialize(String topic, SpecificRecordBase data) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            if (data == null) {
-                return null;
-            }
-            BinaryEncoder encoder = encoderFactory.binaryEncoder(out, null);
-            DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
-            writer.write(data, encoder);
-            encoder.flush();
-            return out.toByteArray();
+        if (data == null) {
+            return null;
+        }
+
+        EncoderState state = encoderState.get();
+        try {
+            DatumWriter<SpecificRecordBase> writer = writers.computeIfAbsent(data.getSchema(), SpecificDatumWriter::new);
+            state.out.reset();
+            state.encoder = encoderFactory.directBinaryEncoder(state.out, state.encoder);
+            writer.write(data, state.encoder);
+            state.encoder.flush();
+            return state.out.toByteArray();
         } catch (IOException ex) {
             throw new SerializationException("Error serializing data for topic [" + topic + "]", ex);
+        } finally {
+            if (state.out.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                encoderState.remove();
+            }
+        }
+    }
+
+    private static class EncoderState {
+        private final ReusableByteArrayOutputStream out = new ReusableByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private BinaryEncoder encoder;
+    }
+
+    private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+        private ReusableByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        private int capacity() {
+            return buf.length;
         }
     }
 }
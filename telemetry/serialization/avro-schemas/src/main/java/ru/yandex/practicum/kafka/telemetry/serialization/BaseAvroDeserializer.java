@@ -6,12 +6,29 @@ import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.util.Map;
+
 public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deserializer<T> {
+
+    // Переиспользовать BinaryDecoder между сообщениями (по умолчанию включено)
+    public static final String REUSE_DECODER_CONFIG = "avro.deserializer.reuse.decoder";
+
+    // Переиспользовать сами записи. Допустимо, только если потребитель полностью обрабатывает
+    // результаты poll() до следующего вызова poll(): записи берутся по кругу из пула размером
+    // max.poll.records, поэтому в пределах одного poll() экземпляры не повторяются
+    public static final String REUSE_RECORDS_CONFIG = "avro.deserializer.reuse.records";
+
     private final DecoderFactory decoderFactory;
     private final DatumReader<T> datumReader;
+    private final ThreadLocal<ReaderState<T>> readerState = new ThreadLocal<>();
+
+    private boolean reuseDecoder = true;
+    private boolean reuseRecords;
+    private int recordPoolSize = ConsumerConfig.DEFAULT_MAX_POLL_RECORDS;
 
     public BaseAvroDeserializer(Schema schema) {
         this(DecoderFactory.get(), schema);
@@ -22,16 +39,67 @@ public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deser
         this.datumReader =  new SpecificDatumReader<>(schema);
     }
 
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        reuseDecoder = getBoolean(configs, REUSE_DECODER_CONFIG, reuseDecoder);
+        reuseRecords = getBoolean(configs, REUSE_RECORDS_CONFIG, reuseRecords);
+        Object maxPollRecords = configs.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
+        if (maxPollRecords != null) {
+            recordPoolSize = Integer.parseInt(maxPollRecords.toString());
+        }
+    }
+
     @Override
     public T deserialize(String topic, byte[] data) {
         try {
             if (data != null) {
-                BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
-                return datumReader.read(null, decoder);
+                if (!reuseDecoder && !reuseRecords) {
+                    BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
+                    return datumReader.read(null, decoder);
+                }
+
+                ReaderState<T> state = getReaderState();
+                BinaryDecoder decoder = decoderFactory.binaryDecoder(data, reuseDecoder ? state.decoder : null);
+                if (reuseDecoder) {
+                    state.decoder = decoder;
+                }
+                if (!reuseRecords) {
+                    return datumReader.read(null, decoder);
+                }
+                int slot = state.nextSlot;
+                state.nextSlot = (slot + 1) % state.records.length;
+                T record = datumReader.read(state.records[slot], decoder);
+                state.records[slot] = record;
+                return record;
             }
             return null;
         } catch (Exception e) {
             throw new SerializationException("Error deserializing data from topic [" + topic + "]", e);
         }
     }
+
+    private ReaderState<T> getReaderState() {
+        ReaderState<T> state = readerState.get();
+        if (state == null) {
+            state = new ReaderState<>(reuseRecords ? recordPoolSize : 0);
+            readerState.set(state);
+        }
+        return state;
+    }
+
+    private static boolean getBoolean(Map<String, ?> configs, String key, boolean defaultValue) {
+        Object value = configs.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.toString());
+    }
+
+    private static class ReaderState<T> {
+        private BinaryDecoder decoder;
+        private final T[] records;
+        private int nextSlot;
+
+        @SuppressWarnings("unchecked")
+        private ReaderState(int poolSize) {
+            this.records = (T[]) new SpecificRecordBase[poolSize];
+        }
+    }
 }